@@ -0,0 +1,131 @@
+package us.kbase.sdk.benchmark;
+
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.tools.ToolProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.kidl.KbService;
+import us.kbase.kidl.KidlParser;
+import us.kbase.sdk.compiler.CachingIncludeProvider;
+import us.kbase.sdk.compiler.CompileOptions;
+import us.kbase.sdk.compiler.JavaTypeGenerator;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+/** Compares deserializing generated POJOs with eagerly and lazily allocated additional
+ * properties maps.
+ *
+ * Run with {@code -PjmhInclude=AdditionalProperties -PjmhProfilers=gc} to see the allocation
+ * per operation in {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdditionalPropertiesBenchmark {
+
+	private static final String SPEC = """
+			module Bench {
+			    typedef structure {
+			        string id;
+			        int count;
+			        float score;
+			    } Item;
+
+			    funcdef get(Item item) returns (Item) authentication none;
+			};
+			""";
+
+	/** Whether the generated POJO allocates its additional properties map lazily. */
+	@Param({"false", "true"})
+	public boolean lazy;
+
+	/** The number of objects in the deserialized list. */
+	@Param({"1000"})
+	public int size;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private Path tempDir;
+	private URLClassLoader loader;
+	private JavaType listType;
+	private String json;
+	private List<?> items;
+
+	@Setup
+	public void setUp() throws Exception {
+		tempDir = Files.createTempDirectory("kb_sdk_bench");
+		final List<KbService> services = KidlParser.parseSpec(KidlParser.parseSpecInt(
+				new StringReader(SPEC), null, new CachingIncludeProvider(tempDir.toFile())));
+		final InMemoryFileSaver out = new InMemoryFileSaver();
+		JavaTypeGenerator.processSpec(services, out, "bench", false, null, null, null,
+				"0.1.0", "", "", null, null,
+				CompileOptions.getBuilder().withJavaLazyAdditionalProperties(lazy).build());
+		final Path src = Files.createDirectories(tempDir.resolve("src/bench/bench"))
+				.resolve("Item.java");
+		Files.write(src, out.getFiles().get("bench/bench/Item.java"));
+		final Path classes = Files.createDirectories(tempDir.resolve("classes"));
+		final int res = ToolProvider.getSystemJavaCompiler().run(null, null, null,
+				"-cp", System.getProperty("java.class.path"), "-d", classes.toString(),
+				src.toString());
+		if (res != 0) {
+			throw new IllegalStateException("Compiling the generated POJO failed");
+		}
+		loader = new URLClassLoader(new URL[] {classes.toUri().toURL()},
+				getClass().getClassLoader());
+		listType = mapper.getTypeFactory().constructCollectionType(
+				List.class, loader.loadClass("bench.bench.Item"));
+		final StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(",");
+			}
+			sb.append("{\"id\":\"item").append(i).append("\",\"count\":").append(i)
+					.append(",\"score\":").append(i / 2.0).append("}");
+		}
+		json = sb.append("]").toString();
+		items = mapper.readValue(json, listType);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		loader.close();
+		try (final Stream<Path> s = Files.walk(tempDir)) {
+			s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public Object deserialize() throws Exception {
+		return mapper.readValue(json, listType);
+	}
+
+	@Benchmark
+	public String serialize() throws Exception {
+		return mapper.writeValueAsString(items);
+	}
+}
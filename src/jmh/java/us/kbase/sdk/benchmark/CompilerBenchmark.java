@@ -0,0 +1,143 @@
+package us.kbase.sdk.benchmark;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.codemodel.JCodeModel;
+
+import us.kbase.kidl.KbModule;
+import us.kbase.kidl.KbService;
+import us.kbase.kidl.KidlParser;
+import us.kbase.sdk.compiler.CachingIncludeProvider;
+import us.kbase.sdk.compiler.JavaData;
+import us.kbase.sdk.compiler.JavaTypeGenerator;
+import us.kbase.sdk.compiler.PojoGenerator;
+import us.kbase.sdk.compiler.PrevCodeParser;
+import us.kbase.sdk.compiler.TemplateBasedGenerator;
+import us.kbase.sdk.compiler.html.HTMLGenerator;
+import us.kbase.sdk.compiler.report.CompilationReporter;
+import us.kbase.sdk.compiler.report.Report;
+import us.kbase.sdk.compiler.report.SpecFile;
+import us.kbase.sdk.util.BackupManager;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+/** Benchmarks for the compiler hot paths over synthetic specs of increasing size.
+ *
+ * Generated code is written to an {@link InMemoryFileSaver} so disk I/O doesn't dominate
+ * the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilerBenchmark {
+
+	/** The number of typedefs and functions in the spec. */
+	@Param({"10", "100", "1000"})
+	public int size;
+
+	private Path tempDir;
+	private String spec;
+	private List<KbService> services;
+	private KbModule module;
+	private JavaData javaData;
+	private List<String> methodNames;
+	private File implFile;
+	private String implText;
+
+	@Setup
+	public void setUp() throws Exception {
+		tempDir = Files.createTempDirectory("kb_sdk_bench");
+		spec = SyntheticSpec.spec(size);
+		services = parse();
+		module = services.get(0).getModules().get(0);
+		javaData = javaProcessSpec();
+		methodNames = SyntheticSpec.methodNames(size);
+		implText = SyntheticSpec.pythonImpl(size);
+		implFile = tempDir.resolve(SyntheticSpec.MODULE + "Impl.py").toFile();
+		Files.writeString(implFile.toPath(), implText);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		try (final Stream<Path> s = Files.walk(tempDir)) {
+			s.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private List<KbService> parse() throws Exception {
+		return KidlParser.parseSpec(KidlParser.parseSpecInt(
+				new StringReader(spec), null, new CachingIncludeProvider(tempDir.toFile())));
+	}
+
+	@Benchmark
+	public List<KbService> parseSpec() throws Exception {
+		return parse();
+	}
+
+	@Benchmark
+	public JavaData javaProcessSpec() throws Exception {
+		return JavaTypeGenerator.processSpec(services, new InMemoryFileSaver(), "us.kbase",
+				true, null, null, null, "0.1.0", "", "");
+	}
+
+	@Benchmark
+	public JCodeModel javaPojos() throws Exception {
+		final JCodeModel codeModel = new JCodeModel();
+		PojoGenerator.generate(javaData.getTypes(), "us.kbase", codeModel, new TreeSet<>());
+		return codeModel;
+	}
+
+	@Benchmark
+	public InMemoryFileSaver templateGenerate() throws Exception {
+		final InMemoryFileSaver out = new InMemoryFileSaver();
+		TemplateBasedGenerator.generate(services, null, true, null, true, null, null,
+				new CachingIncludeProvider(tempDir.toFile()), out, null, null, "0.1.0", "", "");
+		return out;
+	}
+
+	@Benchmark
+	public InMemoryFileSaver htmlGenerate() throws Exception {
+		final InMemoryFileSaver out = new InMemoryFileSaver();
+		new HTMLGenerator().generate(new StringReader(spec),
+				new CachingIncludeProvider(tempDir.toFile()), out);
+		return out;
+	}
+
+	@Benchmark
+	public Map<String, String> parsePrevCode() throws Exception {
+		// don't back up the impl file on every invocation
+		return PrevCodeParser.parsePrevCode(
+				implFile, "#", methodNames, true, BackupManager.off());
+	}
+
+	@Benchmark
+	public Report createReport() throws Exception {
+		return CompilationReporter.createReport(new ArrayList<SpecFile>(), "", "",
+				SyntheticSpec.MODULE, module, implFile.getAbsolutePath(), "#", implText);
+	}
+}
@@ -0,0 +1,84 @@
+package us.kbase.sdk.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Generates synthetic KIDL specs and matching implementation files for benchmarks. */
+public class SyntheticSpec {
+
+	/** The name of the module in the generated specs. */
+	public static final String MODULE = "Bench";
+
+	private SyntheticSpec() {}
+
+	/** Get the method names in a spec generated by {@link #spec(int)}.
+	 * @param size the number of typedefs and functions in the spec.
+	 * @return the method names.
+	 */
+	public static List<String> methodNames(final int size) {
+		final List<String> names = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			names.add("method" + i);
+		}
+		return names;
+	}
+
+	/** Generate a spec with the given number of structure typedefs and functions. Each
+	 * structure refers to the previous one, and each function takes and returns one of them.
+	 * @param size the number of typedefs and functions.
+	 * @return the spec.
+	 */
+	public static String spec(final int size) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("/* A synthetic module for benchmarks. */\n");
+		sb.append("module ").append(MODULE).append(" {\n");
+		for (int i = 0; i < size; i++) {
+			sb.append("    /* Type ").append(i).append(". */\n");
+			sb.append("    typedef structure {\n");
+			sb.append("        int id;\n");
+			sb.append("        string name;\n");
+			sb.append("        list<string> tags;\n");
+			sb.append("        mapping<string, float> scores;\n");
+			sb.append("        tuple<int, string, float> triple;\n");
+			if (i > 0) {
+				sb.append("        Type").append(i - 1).append(" previous;\n");
+			}
+			sb.append("    } Type").append(i).append(";\n\n");
+		}
+		for (int i = 0; i < size; i++) {
+			sb.append("    /* Method ").append(i).append(". */\n");
+			sb.append("    funcdef method").append(i).append("(Type").append(i)
+					.append(" params) returns (Type").append(i)
+					.append(" result) authentication required;\n\n");
+		}
+		sb.append("};\n");
+		return sb.toString();
+	}
+
+	/** Generate a Python implementation file for a spec generated by {@link #spec(int)}, with
+	 * a code block for each method.
+	 * @param size the number of functions.
+	 * @return the implementation file.
+	 */
+	public static String pythonImpl(final int size) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("#BEGIN_HEADER\nimport os\n#END_HEADER\n\n\n");
+		sb.append("class ").append(MODULE).append(":\n\n");
+		sb.append("    #BEGIN_CLASS_HEADER\n    pass\n    #END_CLASS_HEADER\n\n");
+		sb.append("    def __init__(self, config):\n");
+		sb.append("        #BEGIN_CONSTRUCTOR\n        self.config = config\n");
+		sb.append("        #END_CONSTRUCTOR\n        pass\n\n");
+		for (int i = 0; i < size; i++) {
+			sb.append("    def method").append(i).append("(self, ctx, params):\n");
+			sb.append("        #BEGIN method").append(i).append("\n");
+			sb.append("        result = dict(params)\n");
+			sb.append("        result['id'] = ").append(i).append("\n");
+			sb.append("        #END method").append(i).append("\n");
+			sb.append("        return [result]\n\n");
+		}
+		sb.append("    def status(self, ctx):\n");
+		sb.append("        #BEGIN_STATUS\n        returnVal = {'state': 'OK'}\n");
+		sb.append("        #END_STATUS\n        return [returnVal]\n");
+		return sb.toString();
+	}
+}
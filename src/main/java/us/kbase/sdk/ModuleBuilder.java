@@ -8,6 +8,11 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import picocli.AutoComplete.GenerateCompletion;
@@ -19,10 +24,16 @@ import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 import us.kbase.sdk.common.KBaseYmlConfig;
+import us.kbase.sdk.compiler.BatchCompiler;
+import us.kbase.sdk.compiler.CachingIncludeProvider;
+import us.kbase.sdk.compiler.CompileOptions;
+import us.kbase.sdk.compiler.JavaClientOptions;
+import us.kbase.sdk.compiler.JavaServerOptions;
 import us.kbase.sdk.compiler.RunCompileCommand;
 import us.kbase.sdk.initializer.ModuleInitializer;
 import us.kbase.sdk.installer.ClientInstaller;
 import us.kbase.sdk.runner.ModuleRunner;
+import us.kbase.sdk.templates.TemplateFormatter;
 import us.kbase.sdk.tester.ModuleTester;
 import us.kbase.sdk.util.DeployConfigGenerator;
 import us.kbase.sdk.util.ProcessHelper;
@@ -154,6 +165,9 @@ public class ModuleBuilder implements Runnable {
 						moduleName, userName, "" + language, verbose
 				);
 				initer.initialize(example);
+				if (verbose) {
+					TemplateFormatter.printStats(System.out);
+				}
 			}
 			catch (Exception e) {
 				showError("Error while initializing module", e.getMessage());
@@ -294,6 +308,101 @@ public class ModuleBuilder implements Runnable {
 		)
 		boolean javaServerSide;
 		
+		@Option(
+				names = {"--javalazyprops"},
+				description = """
+						Generate Java classes for spec types that only create the map of \
+						additional properties when it's first used. Saves memory when \
+						holding many instances.\
+						""",
+				defaultValue = "false"
+		)
+		boolean javaLazyAdditionalProperties;
+		
+		@Option(
+				names = {"--javahttpclient"},
+				description = """
+						Generate Java clients that send requests with java.net.http.HttpClient \
+						rather than a new connection per call. Connections are kept alive \
+						and reused, and HTTP/2 can be enabled by passing an HTTP/2 client to \
+						the client constructor. The client code requires Java 11 or later.\
+						""",
+				defaultValue = "false"
+		)
+		boolean javaHttpClient;
+		
+		@Option(
+				names = {"--javafutures"},
+				description = """
+						Generate a fooAsync method returning a CompletableFuture for each \
+						method in Java clients. Asynchronous jobs are polled by a scheduler \
+						shared by all clients rather than a sleeping thread per job. If \
+						the service has a _check_jobs method, clients can check jobs that \
+						are due together in one request with setAsyncJobBatchChecks(true).\
+						""",
+				defaultValue = "false"
+		)
+		boolean javaFutures;
+		
+		@Option(
+				names = {"--javabatch"},
+				description = """
+						Generate a newBatch() method in Java clients that collects calls \
+						and sends them to the service in one JSON-RPC batch request. If \
+						the service rejects batch requests, the calls are made one at a \
+						time. Not supported for asynchronous or dynamic service clients.\
+						""",
+				defaultValue = "false"
+		)
+		boolean javaBatch;
+		
+		@Option(
+				names = {"--javavirtualthreads"},
+				description = """
+						Generate Java servers whose main method serves each request on a \
+						virtual thread rather than a thread from a fixed size pool. Requires \
+						a --javatarget of 21 or later. Limits on concurrent calls of a method \
+						can be set in the spec with a '@concurrency <max calls> \
+						[<max queued calls>]' comment line.\
+						""",
+				defaultValue = "false"
+		)
+		boolean javaVirtualThreads;
+		
+		@Option(
+				paramLabel = "<java_version>",
+				names = {"--javatarget"},
+				description = """
+						Set the version of the Java runtime that runs the generated Java \
+						servers.\
+						""",
+				defaultValue = "" + JavaServerOptions.DEFAULT_TARGET_JAVA_VERSION,
+				showDefaultValue = CommandLine.Help.Visibility.ALWAYS
+		)
+		int javaTarget;
+		
+		@Option(
+				names = {"--javametrics"},
+				description = """
+						Generate Java servers that record the latency, errors, and request \
+						and response sizes of the calls of each method, and return them \
+						from a generated 'metrics' method.\
+						""",
+				defaultValue = "false"
+		)
+		boolean javaMetrics;
+		
+		@Option(
+				names = {"--javaprometheus"},
+				description = """
+						Generate Java servers that serve the metrics of --javametrics in \
+						the Prometheus text format for GET requests to /metrics on the \
+						service port. Implies --javametrics.\
+						""",
+				defaultValue = "false"
+		)
+		boolean javaPrometheus;
+		
 		@Option(
 				paramLabel = "<json_schema_dir>",
 				names = {"--jsonschema"},
@@ -313,38 +422,204 @@ public class ModuleBuilder implements Runnable {
 		)
 		boolean html;
 		
+		@Option(
+				names = {"--incremental"},
+				description = """
+						Skip code generation if the spec files, the SDK version, and the \
+						compile options are unchanged since the last incremental compilation \
+						into the output folder.\
+						""",
+				defaultValue = "false"
+		)
+		boolean incremental;
+		
+		@Option(
+				paramLabel = "<thread_count>",
+				names = {"--threads"},
+				description = """
+						Set the number of threads on which the generators for each language \
+						run concurrently, or the number of specification files to compile at \
+						once when compiling more than one. 0 uses the number of available \
+						processors.\
+						""",
+				defaultValue = "0",
+				showDefaultValue = CommandLine.Help.Visibility.ALWAYS
+		)
+		int threads;
+		
+		@Option(
+				paramLabel = "<archive_file>",
+				names = {"--archive"},
+				description = """
+						Write all the generated files into a single archive rather than into \
+						the output folder. The format is determined by the file extension: \
+						.zip, .tar, .tar.gz or .tgz. Paths in the archive are relative to the \
+						output folder, and code in previously generated implementation files \
+						is not preserved. Cannot be combined with --incremental.\
+						"""
+		)
+		Path archive;
+		
+		@Option(
+				paramLabel = "<spec_list_file>",
+				names = {"--spec-list"},
+				description = """
+						Compile the KIDL specification files listed in this file, one path \
+						per line, in addition to any provided as arguments. Relative paths are \
+						resolved against the list file's folder. Blank lines and lines \
+						starting with # are ignored.\
+						"""
+		)
+		Path specList;
+		
+		@Option(
+				paramLabel = "<timings_file>",
+				names = {"--timings"},
+				description = """
+						Write the outcome and compile time of each specification file to \
+						this file as JSON.\
+						"""
+		)
+		Path timings;
+		
 		@Parameters(
 				paramLabel = "<spec_file>",
-				description = "The KIDL specification file to process.",
-				arity = "1"
+				description = """
+						The KIDL specification files to process. When more than one file is \
+						given, the files are compiled concurrently on the number of threads \
+						set by --threads, and the output for each file goes to a subfolder \
+						of the output folder named after the file without its extension.\
+						""",
+				arity = "0..*"
 		)
-		Path specFileName;
+		List<Path> specFileNames = new ArrayList<>();
 
 		@Override
 		public Integer call() {
-			// TODO CODE this method is 100 lines, split it up (pretty basic though)
 			System.out.println(VERSION_INFO);
 			
-			final Path specFile = specFileName.toAbsolutePath();
-			if (!Files.exists(specFile) || !Files.isRegularFile(specFile)) {
-				showError(
-						"Error accessing input KIDL spec file",
-						"File does not exist or is not a regular file"
-				);
+			final List<Path> specFiles = new ArrayList<>();
+			for (final Path p: specFileNames) {
+				specFiles.add(p.toAbsolutePath());
+			}
+			if (specList != null) {
+				try {
+					specFiles.addAll(readSpecList(specList.toAbsolutePath()));
+				} catch (IOException e) {
+					showError("Error reading spec list file", e.getMessage());
+					if (verbose) {
+						e.printStackTrace();
+					}
+					return 1;
+				}
+			}
+			if (specFiles.isEmpty()) {
+				showError("No KIDL spec files", "Provide a spec file or a spec list file");
 				return 1;
 			}
-			
-			final Path outDir = out.toAbsolutePath();
-			try {
-				Files.createDirectories(outDir);
-			} catch (IOException e) {
-				showError("Error creating output directory", e.getMessage());
-				if (verbose) {
-					e.printStackTrace();
+			for (final Path specFile: specFiles) {
+				if (!Files.exists(specFile) || !Files.isRegularFile(specFile)) {
+					showError(
+							"Error accessing input KIDL spec file " + specFile,
+							"File does not exist or is not a regular file"
+					);
+					return 1;
 				}
+			}
+			final boolean batch = specFiles.size() > 1;
+			if (batch && archive != null) {
+				showError("Error compiling KIDL specifications",
+						"--archive can only be used with a single spec file");
 				return 1;
 			}
-
+			if (batch && RunCompileCommand.getReportFile() != null) {
+				// every spec would write its report to the same file
+				showError("Error compiling KIDL specifications",
+						"A compile report can only be written for a single spec file");
+				return 1;
+			}
+			final Path outRoot = out.toAbsolutePath();
+			final Map<Path, Path> specToOutDir = new LinkedHashMap<>();
+			for (final Path specFile: specFiles) {
+				final String name = specFile.getFileName().toString();
+				specToOutDir.put(specFile, batch ?
+						outRoot.resolve(name.contains(".") ?
+								name.substring(0, name.lastIndexOf('.')) : name) :
+						outRoot);
+			}
+			if (specToOutDir.size() != specFiles.size() ||
+					new HashSet<>(specToOutDir.values()).size() != specToOutDir.size()) {
+				showError("Error compiling KIDL specifications",
+						"Spec files must be unique and have unique names without extensions");
+				return 1;
+			}
+			final List<BatchCompiler.Result> results;
+			try {
+				// in a batch, parallelize across specs rather than within each spec
+				results = new BatchCompiler(
+						(specFile, outDir, includeCache) -> compile(
+								specFile, outDir, batch ? 1 : threads, includeCache),
+						batch ? threads : 1
+				).compile(specToOutDir);
+			} catch (InterruptedException e) {
+				showError("Interrupted while compiling KIDL specifications", e.getMessage());
+				return 1;
+			}
+			int failed = 0;
+			for (final BatchCompiler.Result r: results) {
+				if (!r.success) {
+					failed++;
+					showError(batch ? "Error compiling KIDL specification " + r.spec :
+							"Error compiling KIDL specfication:", r.error);
+					if (verbose) {
+						r.exception.printStackTrace();
+					}
+				}
+			}
+			if (batch) {
+				for (final BatchCompiler.Result r: results) {
+					System.out.println(String.format("%s %s (%d ms)",
+							r.success ? "OK    " : "FAILED", r.spec, r.timeMs));
+				}
+				System.out.println(String.format("Compiled %d of %d KIDL specifications",
+						results.size() - failed, results.size()));
+			}
+			if (verbose) {
+				RunCompileCommand.printStats(System.out);
+				TemplateFormatter.printStats(System.out);
+			}
+			if (timings != null) {
+				try {
+					BatchCompiler.writeResults(results, timings.toAbsolutePath().toFile());
+				} catch (IOException e) {
+					showError("Error writing timings file", e.getMessage());
+					if (verbose) {
+						e.printStackTrace();
+					}
+					return 1;
+				}
+			}
+			return failed == 0 ? 0 : 1;
+		}
+		
+		private static List<Path> readSpecList(final Path specList) throws IOException {
+			final List<Path> specs = new ArrayList<>();
+			for (final String line: Files.readAllLines(specList)) {
+				final String l = line.trim();
+				if (!l.isEmpty() && !l.startsWith("#")) {
+					specs.add(specList.getParent().resolve(l).normalize());
+				}
+			}
+			return specs;
+		}
+		
+		private void compile(
+				final Path specFile,
+				final Path outDir,
+				final int genThreads,
+				final CachingIncludeProvider.SharedCache includeCache)
+				throws Exception {
+			Files.createDirectories(outDir);
 			final Path moduleDir = specFile.getParent();
 			String semanticVersion = null;
 			try {
@@ -377,38 +652,48 @@ public class ModuleBuilder implements Runnable {
 					);
 				}
 			}
-			try {
-				// TODO CODE start using Path instead of File
-				// TODO CODE this needs a freakin builder
-				RunCompileCommand.generate(
-						specFile.toFile(),
-						url,
-						pyClientSide,
-						pyClientName, 
-						pyServerSide,
-						pyServerName,
-						pyImplName,
-						javaClientSide, 
-						javaServerSide,
-						javaPackageParent,
-						javaSrcDir,
-						outDir.toFile(),
-						jsonSchema,
-						clientVersions.clAsyncVer,
-						clientVersions.dynservVer,
-						html,
-						semanticVersion,
-						gitUrl,
-						gitCommitHash
-				);
-			} catch (Throwable e) {
-				showError("Error compiling KIDL specfication:", e.getMessage());
-				if (verbose) {
-					e.printStackTrace();
-				}
-				return 1;
-			}
-			return 0;
+			// TODO CODE start using Path instead of File
+			// TODO CODE this needs a freakin builder
+			RunCompileCommand.generate(
+					specFile.toFile(),
+					url,
+					pyClientSide,
+					pyClientName, 
+					pyServerSide,
+					pyServerName,
+					pyImplName,
+					javaClientSide, 
+					javaServerSide,
+					javaPackageParent,
+					javaSrcDir,
+					outDir.toFile(),
+					jsonSchema,
+					clientVersions.clAsyncVer,
+					clientVersions.dynservVer,
+					html,
+					semanticVersion,
+					gitUrl,
+					gitCommitHash,
+					CompileOptions.getBuilder()
+							.withIncremental(incremental)
+							.withThreads(genThreads)
+							.withArchive(archive == null ?
+									null : archive.toAbsolutePath().toFile())
+							.withJavaLazyAdditionalProperties(javaLazyAdditionalProperties)
+							.withIncludeCache(includeCache)
+							.withJavaClientOptions(JavaClientOptions.getBuilder()
+									.withHttpClientTransport(javaHttpClient)
+									.withFutureMethods(javaFutures)
+									.withBatchCalls(javaBatch)
+									.build())
+							.withJavaServerOptions(JavaServerOptions.getBuilder()
+									.withTargetJavaVersion(javaTarget)
+									.withVirtualThreads(javaVirtualThreads)
+									.withMetrics(javaMetrics)
+									.withPrometheusEndpoint(javaPrometheus)
+									.build())
+							.build()
+			);
 		}
 	}
 	
@@ -720,6 +1005,9 @@ public class ModuleBuilder implements Runnable {
 			description = """
 					Prepare the module deploy.cfg file for an SDK module execution.
 					The deploy.cfg file is overwritten in place with a copy made to a *.bak file.
+					Set the KB_SDK_BACKUP_POLICY environment variable to "off" to skip the \
+					copy, or to "keep-last=N" and / or "if-changed" (comma separated) to keep \
+					bounded copies in a .kb_sdk_backups directory.
 					"""
 	)
 	public static class PrepareDeployConfigCommand extends Verbose implements Callable<Integer> {
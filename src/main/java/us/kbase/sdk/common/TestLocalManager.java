@@ -169,7 +169,7 @@ public class TestLocalManager {
 				// needs to be regenerated to handle refdata.
 				// This all seems very clunky and could use a rethink
 				TemplateFormatter.formatTemplate(
-						"module_run_tests", moduleContext, runTestsSh.toFile()
+						"module_run_tests", moduleContext, runTestsSh.toFile(), true
 				);
 				Files.createDirectories(refDataDir);
 			}
@@ -0,0 +1,155 @@
+package us.kbase.sdk.compiler;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/** Compiles a batch of spec files concurrently in a single process, so the JVM startup and
+ * the template and schema generator setup are paid once rather than once per spec. Spec files
+ * included by several specs in the batch are read once.
+ *
+ * A failure compiling one spec doesn't stop the others. Each spec gets a {@link Result} with
+ * its outcome and timing.
+ */
+public class BatchCompiler {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.configure(SerializationFeature.INDENT_OUTPUT, true);
+
+	/** Compiles a single spec file. */
+	public interface SpecCompiler {
+
+		/** Compile a spec file.
+		 * @param specFile the spec file.
+		 * @param outDir the output directory for the spec.
+		 * @param includeCache the cache of included spec files shared by the specs in the
+		 * batch.
+		 * @throws Exception if the compile fails.
+		 */
+		void compile(
+				Path specFile,
+				Path outDir,
+				CachingIncludeProvider.SharedCache includeCache)
+				throws Exception;
+	}
+
+	/** The outcome of compiling one spec file. */
+	public static class Result {
+		/** The spec file. */
+		@JsonProperty("spec")
+		public String spec;
+		/** The output directory. */
+		@JsonProperty("out_dir")
+		public String outDir;
+		/** Whether the compile succeeded. */
+		@JsonProperty("success")
+		public boolean success;
+		/** The error message if the compile failed, or null. */
+		@JsonProperty("error")
+		public String error;
+		/** The wall clock time the compile took in milliseconds. */
+		@JsonProperty("time_ms")
+		public long timeMs;
+		/** The exception that caused the compile to fail, or null. */
+		@JsonIgnore
+		public Throwable exception;
+	}
+
+	private final SpecCompiler compiler;
+	private final int threads;
+
+	/** Create the compiler.
+	 * @param compiler the compiler for single spec files. It must be safe to call from
+	 * multiple threads.
+	 * @param threads the maximum number of specs to compile at once. Values less than 1 mean
+	 * the number of available processors.
+	 */
+	public BatchCompiler(final SpecCompiler compiler, final int threads) {
+		this.compiler = requireNonNull(compiler, "compiler");
+		this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+	}
+
+	/** Compile spec files. A single spec file is compiled on the calling thread.
+	 * @param specs the spec files mapped to their output directories.
+	 * @return the results, in the iteration order of the spec files.
+	 * @throws InterruptedException if the thread is interrupted while waiting for compiles.
+	 */
+	public List<Result> compile(final Map<Path, Path> specs) throws InterruptedException {
+		requireNonNull(specs, "specs");
+		final CachingIncludeProvider.SharedCache includeCache =
+				new CachingIncludeProvider.SharedCache();
+		if (specs.size() == 1 || threads == 1) {
+			final List<Result> results = new ArrayList<>();
+			for (final Map.Entry<Path, Path> spec: specs.entrySet()) {
+				results.add(compile(spec.getKey(), spec.getValue(), includeCache));
+			}
+			return results;
+		}
+		final ExecutorService pool = Executors.newFixedThreadPool(
+				Math.min(threads, specs.size()));
+		try {
+			final List<Future<Result>> futures = new ArrayList<>();
+			for (final Map.Entry<Path, Path> spec: specs.entrySet()) {
+				futures.add(pool.submit(
+						() -> compile(spec.getKey(), spec.getValue(), includeCache)));
+			}
+			final List<Result> results = new ArrayList<>();
+			for (final Future<Result> f: futures) {
+				try {
+					results.add(f.get());
+				} catch (ExecutionException e) {
+					// compile() catches everything, so this is a bug
+					throw new IllegalStateException("Unexpected batch compile error", e);
+				}
+			}
+			return results;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private Result compile(
+			final Path specFile,
+			final Path outDir,
+			final CachingIncludeProvider.SharedCache includeCache) {
+		final Result r = new Result();
+		r.spec = specFile.toString();
+		r.outDir = outDir.toString();
+		final long start = System.nanoTime();
+		try {
+			compiler.compile(specFile, outDir, includeCache);
+			r.success = true;
+		} catch (Throwable e) {
+			r.success = false;
+			r.error = e.getMessage() == null ? e.toString() : e.getMessage();
+			r.exception = e;
+		}
+		r.timeMs = (System.nanoTime() - start) / 1000000;
+		return r;
+	}
+
+	/** Write compile results as a JSON list.
+	 * @param results the results.
+	 * @param file the file to write.
+	 * @throws IOException if the file couldn't be written.
+	 */
+	public static void writeResults(final List<Result> results, final File file)
+			throws IOException {
+		MAPPER.writeValue(file, Collections.unmodifiableList(results));
+	}
+}
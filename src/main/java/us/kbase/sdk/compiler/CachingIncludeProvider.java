@@ -0,0 +1,202 @@
+package us.kbase.sdk.compiler;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+
+import us.kbase.jkidl.IncludeProvider;
+import us.kbase.jkidl.ParseException;
+import us.kbase.jkidl.SpecParser;
+import us.kbase.kidl.KbModule;
+import us.kbase.kidl.KidlParseException;
+
+/** An include provider that reads and parses each included spec file once, no matter how
+ * many times it is included across the dependency graph or how many parsers use the provider.
+ * Spec files are keyed by their canonical path.
+ *
+ * The provider also records the content of every spec file included so far, for use in
+ * compile reports and compile manifests.
+ *
+ * Includes are resolved one at a time, so the provider may be shared between threads.
+ * Providers for different specs, for example the specs in a batch compile, can share the
+ * contents of the included files they read with a {@link SharedCache}.
+ */
+public class CachingIncludeProvider implements IncludeProvider {
+
+	private final File dir;
+	private final SharedCache shared;
+	private final Map<String, Include> cache = new LinkedHashMap<>();
+	// the spec files currently being parsed, innermost last
+	private final Deque<String> parsing = new ArrayDeque<>();
+	// the spec files included while parsing each of the spec files being parsed
+	private final Deque<Set<String>> nestedIncludes = new ArrayDeque<>();
+
+	/** Create the provider.
+	 * @param dir the directory against which relative include paths are resolved.
+	 */
+	public CachingIncludeProvider(final File dir) {
+		this(dir, new SharedCache());
+	}
+
+	/** Create a provider that shares the spec files it reads with other providers.
+	 * @param dir the directory against which relative include paths are resolved.
+	 * @param shared the cache shared with the other providers.
+	 */
+	public CachingIncludeProvider(final File dir, final SharedCache shared) {
+		this.dir = requireNonNull(dir, "dir");
+		this.shared = requireNonNull(shared, "shared");
+	}
+
+	/** Spec file contents that are shared between include providers, so a spec file included
+	 * by several specs is read once. Each provider parses the files itself, since the parsed
+	 * modules belong to the spec being compiled and mustn't be shared between specs.
+	 *
+	 * The cache may be used from multiple threads.
+	 */
+	public static class SharedCache {
+
+		private final Map<String, String> contents = new HashMap<>();
+
+		private synchronized String getContent(final String key, final File specFile) {
+			String content = contents.get(key);
+			if (content == null) {
+				try {
+					content = FileUtils.readFileToString(specFile);
+				} catch (IOException e) {
+					throw new IllegalStateException("Unexpected error", e);
+				}
+				contents.put(key, content);
+			}
+			return content;
+		}
+	}
+
+	private static class Parsed {
+		private final Map<String, KbModule> modules;
+		// the spec files included by the spec file, directly or indirectly
+		private final Set<String> includes;
+
+		private Parsed(final Map<String, KbModule> modules, final Set<String> includes) {
+			this.modules = modules;
+			this.includes = Collections.unmodifiableSet(includes);
+		}
+	}
+
+	private static class Include {
+		private final String fileName;
+		private final String content;
+		private Parsed parsed;
+
+		private Include(final String fileName, final String content) {
+			this.fileName = fileName;
+			this.content = content;
+		}
+	}
+
+	@Override
+	public synchronized Map<String, KbModule> parseInclude(final String includeLine)
+			throws KidlParseException {
+		String specPath = includeLine.trim();
+		if (specPath.startsWith("#include"))
+			specPath = specPath.substring(8).trim();
+		if (specPath.startsWith("<"))
+			specPath = specPath.substring(1).trim();
+		if (specPath.endsWith(">"))
+			specPath = specPath.substring(0, specPath.length() - 1).trim();
+		File specFile = new File(specPath);
+		if (!specFile.isAbsolute())
+			specFile = new File(dir, specPath);
+		if (!specFile.exists())
+			throw new KidlParseException("Can not find included spec-file: " +
+					specFile.getAbsolutePath());
+		final String key;
+		try {
+			key = specFile.getCanonicalPath();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unexpected error", e);
+		}
+		final Include inc = record(key, specFile);
+		if (inc.parsed == null) {
+			if (parsing.contains(key)) {
+				throw new KidlParseException("Circular include of spec-file: " +
+						specFile.getAbsolutePath());
+			}
+			final Set<String> nested = new LinkedHashSet<>();
+			parsing.addLast(key);
+			nestedIncludes.addLast(nested);
+			final Map<String, KbModule> modules;
+			try {
+				modules = new SpecParser(new StringReader(inc.content)).SpecStatement(this);
+			} catch (ParseException e) {
+				throw new KidlParseException("Error parsing spec-file [" +
+						specFile.getAbsolutePath() + "]: " + e.getMessage());
+			} finally {
+				parsing.removeLast();
+				nestedIncludes.removeLast();
+			}
+			inc.parsed = new Parsed(modules, nested);
+		}
+		// a copy, in case the parser modifies the map
+		return new LinkedHashMap<>(inc.parsed.modules);
+	}
+
+	/* Record that a spec file was included, both by this provider and by the spec files
+	 * currently being parsed.
+	 */
+	private Include record(final String key, final File specFile) {
+		for (final Set<String> nested: nestedIncludes) {
+			nested.add(key);
+		}
+		Include inc = cache.get(key);
+		if (inc == null) {
+			inc = new Include(specFile.getName(), shared.getContent(key, specFile));
+			cache.put(key, inc);
+		}
+		if (inc.parsed != null) {
+			for (final Set<String> nested: nestedIncludes) {
+				nested.addAll(inc.parsed.includes);
+			}
+		}
+		return inc;
+	}
+
+	/** Get the canonical paths of the spec files included so far, in the order they were
+	 * first included.
+	 * @return the included spec file paths.
+	 */
+	public synchronized List<String> getIncludePaths() {
+		return Collections.unmodifiableList(new ArrayList<>(cache.keySet()));
+	}
+
+	/** Get the name of an included spec file, without the path.
+	 * @param includePath the canonical path of the spec file as returned by
+	 * {@link #getIncludePaths()}.
+	 * @return the file name.
+	 */
+	public synchronized String getFileName(final String includePath) {
+		return cache.get(includePath).fileName;
+	}
+
+	/** Get the content of an included spec file.
+	 * @param includePath the canonical path of the spec file as returned by
+	 * {@link #getIncludePaths()}.
+	 * @return the spec file content.
+	 */
+	public synchronized String getContent(final String includePath) {
+		return cache.get(includePath).content;
+	}
+}
@@ -0,0 +1,136 @@
+package us.kbase.sdk.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import us.kbase.sdk.GitCommit;
+import us.kbase.sdk.ModuleBuilder;
+
+/** The record of a previous compilation stored in the output directory, used to skip
+ * generation when neither the spec files, the SDK, nor the compile options have changed.
+ */
+public class CompileManifest {
+
+	/** The name of the manifest file in the compilation output directory. */
+	public static final String MANIFEST_FILE_NAME = ".kb-sdk-compile.json";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.configure(SerializationFeature.INDENT_OUTPUT, true);
+
+	/** The fingerprint of the spec files, SDK version, and compile options. */
+	@JsonProperty("fingerprint")
+	public String fingerprint;
+	/** The canonical paths of the included spec files, in the order they were parsed. */
+	@JsonProperty("includes")
+	public List<String> includes = new ArrayList<>();
+	/** The absolute paths of the generated files. */
+	@JsonProperty("outputs")
+	public List<String> outputs = new ArrayList<>();
+
+	/** Read the manifest from a compilation output directory.
+	 * @param outDir the output directory.
+	 * @return the manifest, or null if it doesn't exist or can't be read.
+	 */
+	public static CompileManifest read(final File outDir) {
+		final File f = new File(outDir, MANIFEST_FILE_NAME);
+		if (!f.isFile()) {
+			return null;
+		}
+		try {
+			return MAPPER.readValue(f, CompileManifest.class);
+		} catch (IOException e) {
+			// a broken manifest just means a full compile
+			return null;
+		}
+	}
+
+	/** Write the manifest to a compilation output directory, creating the directory if
+	 * needed. Nothing else may have been written there, e.g. if only Java code was generated
+	 * into a source directory elsewhere.
+	 * @param outDir the output directory.
+	 * @throws IOException if the manifest couldn't be written.
+	 */
+	public void write(final File outDir) throws IOException {
+		Files.createDirectories(outDir.toPath());
+		MAPPER.writeValue(new File(outDir, MANIFEST_FILE_NAME), this);
+	}
+
+	/** Check whether the manifest describes a compilation with the given fingerprint whose
+	 * output files all still exist.
+	 * @param fingerprint the fingerprint of the current compilation.
+	 * @return true if generation can be skipped.
+	 */
+	public boolean isUpToDate(final String fingerprint) {
+		if (fingerprint == null || !fingerprint.equals(this.fingerprint)) {
+			return false;
+		}
+		for (final String output: outputs) {
+			if (!new File(output).isFile()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Compute a compilation fingerprint from the SDK version, the compile options, and the
+	 * contents of the main and included spec files.
+	 * @param options the compile options as strings. Order is significant.
+	 * @param mainSpec the main spec file.
+	 * @param includes the canonical paths of the included spec files.
+	 * @return the fingerprint, or null if an included spec file no longer exists.
+	 * @throws IOException if a spec file couldn't be read.
+	 */
+	public static String fingerprint(
+			final List<String> options,
+			final File mainSpec,
+			final Collection<String> includes)
+			throws IOException {
+		final MessageDigest digest = getDigest();
+		update(digest, ModuleBuilder.VERSION);
+		update(digest, GitCommit.COMMIT);
+		for (final String option: options) {
+			update(digest, option);
+		}
+		update(digest, Files.readAllBytes(mainSpec.toPath()));
+		for (final String include: includes) {
+			final File f = new File(include);
+			if (!f.isFile()) {
+				return null;
+			}
+			update(digest, include);
+			update(digest, Files.readAllBytes(f.toPath()));
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	private static void update(final MessageDigest digest, final String value) {
+		update(digest, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void update(final MessageDigest digest, final byte[] value) {
+		// length prefix so adjacent values can't run into each other
+		digest.update(Integer.toString(value.length).getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) ':');
+		digest.update(value);
+	}
+
+	private static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
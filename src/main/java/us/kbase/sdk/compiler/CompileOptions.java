@@ -0,0 +1,224 @@
+package us.kbase.sdk.compiler;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+
+/**
+ * Options for {@link RunCompileCommand} and {@link JavaTypeGenerator} beyond the spec file,
+ * the languages to generate, and where to put the output. Instances are created via
+ * {@link #getBuilder()}.
+ */
+public final class CompileOptions {
+
+	private static final CompileOptions DEFAULTS = getBuilder().build();
+
+	private final boolean incremental;
+	private final int threads;
+	private final File archive;
+	private final boolean javaLazyAdditionalProperties;
+	private final JavaClientOptions javaClientOptions;
+	private final JavaServerOptions javaServerOptions;
+	private final CachingIncludeProvider.SharedCache includeCache;
+
+	private CompileOptions(final Builder b) {
+		this.incremental = b.incremental;
+		this.threads = b.threads;
+		this.archive = b.archive;
+		this.javaLazyAdditionalProperties = b.javaLazyAdditionalProperties;
+		this.javaClientOptions = b.javaClientOptions;
+		this.javaServerOptions = b.javaServerOptions;
+		this.includeCache = b.includeCache;
+	}
+
+	/**
+	 * Get the options for a standard compile.
+	 * @return the default options.
+	 */
+	public static CompileOptions defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * Check whether code generation is skipped when the spec files and compile options are
+	 * unchanged since the last incremental compile into the same output directory.
+	 * @return true for an incremental compile.
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Get the number of threads on which the generators for each language run concurrently.
+	 * @return the number of threads. Values less than 1 mean the number of available
+	 * processors.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Get the zip or tar archive into which all the generated files are written, with paths
+	 * relative to the output directory, rather than into the output directory.
+	 * @return the archive, or null to write into the output directory.
+	 */
+	public File getArchive() {
+		return archive;
+	}
+
+	/**
+	 * Check whether Java POJOs allocate the map for additional properties on first use
+	 * rather than when the POJO is created.
+	 * @return true if the map is lazily allocated.
+	 */
+	public boolean isJavaLazyAdditionalProperties() {
+		return javaLazyAdditionalProperties;
+	}
+
+	/**
+	 * Get the options for the generated Java clients.
+	 * @return the client options.
+	 */
+	public JavaClientOptions getJavaClientOptions() {
+		return javaClientOptions;
+	}
+
+	/**
+	 * Get the options for the generated Java servers.
+	 * @return the server options.
+	 */
+	public JavaServerOptions getJavaServerOptions() {
+		return javaServerOptions;
+	}
+
+	/**
+	 * Get the cache of included spec files shared with other compiles, such as the other
+	 * specs in a batch compile.
+	 * @return the cache, or null if included spec files are only cached for this compile.
+	 */
+	public CachingIncludeProvider.SharedCache getIncludeCache() {
+		return includeCache;
+	}
+
+	@Override
+	public String toString() {
+		return "CompileOptions [incremental=" + incremental + ", threads=" + threads +
+				", archive=" + archive +
+				", javaLazyAdditionalProperties=" + javaLazyAdditionalProperties +
+				", javaClientOptions=" + javaClientOptions +
+				", javaServerOptions=" + javaServerOptions + "]";
+	}
+
+	/**
+	 * Get a builder for {@link CompileOptions}.
+	 * @return the builder.
+	 */
+	public static Builder getBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * Builder for {@link CompileOptions}.
+	 */
+	public static final class Builder {
+		private boolean incremental = false;
+		private int threads = 1;
+		private File archive = null;
+		private boolean javaLazyAdditionalProperties = false;
+		private JavaClientOptions javaClientOptions = JavaClientOptions.defaults();
+		private JavaServerOptions javaServerOptions = JavaServerOptions.defaults();
+		private CachingIncludeProvider.SharedCache includeCache = null;
+
+		private Builder() {}
+
+		/**
+		 * Set whether code generation is skipped when the spec files and compile options are
+		 * unchanged since the last incremental compile. Default false.
+		 * @param incremental true for an incremental compile.
+		 * @return this Builder.
+		 */
+		public Builder withIncremental(final boolean incremental) {
+			this.incremental = incremental;
+			return this;
+		}
+
+		/**
+		 * Set the number of threads on which the generators for each language run
+		 * concurrently. Values less than 1 mean the number of available processors.
+		 * Default 1.
+		 * @param threads the number of threads.
+		 * @return this Builder.
+		 */
+		public Builder withThreads(final int threads) {
+			this.threads = threads;
+			return this;
+		}
+
+		/**
+		 * Set a zip or tar archive into which all the generated files are written, with paths
+		 * relative to the output directory, rather than into the output directory. An
+		 * archive can't be combined with an incremental compile. Default null.
+		 * @param archive the archive, or null to write into the output directory.
+		 * @return this Builder.
+		 */
+		public Builder withArchive(final File archive) {
+			this.archive = archive;
+			return this;
+		}
+
+		/**
+		 * Set whether Java POJOs allocate the map for additional properties on first use
+		 * rather than when the POJO is created. Default false.
+		 * @param javaLazyAdditionalProperties true to lazily allocate the map.
+		 * @return this Builder.
+		 */
+		public Builder withJavaLazyAdditionalProperties(
+				final boolean javaLazyAdditionalProperties) {
+			this.javaLazyAdditionalProperties = javaLazyAdditionalProperties;
+			return this;
+		}
+
+		/**
+		 * Set the options for the generated Java clients. Default
+		 * {@link JavaClientOptions#defaults()}.
+		 * @param javaClientOptions the client options.
+		 * @return this Builder.
+		 */
+		public Builder withJavaClientOptions(final JavaClientOptions javaClientOptions) {
+			this.javaClientOptions = requireNonNull(javaClientOptions, "javaClientOptions");
+			return this;
+		}
+
+		/**
+		 * Set the options for the generated Java servers. Default
+		 * {@link JavaServerOptions#defaults()}.
+		 * @param javaServerOptions the server options.
+		 * @return this Builder.
+		 */
+		public Builder withJavaServerOptions(final JavaServerOptions javaServerOptions) {
+			this.javaServerOptions = requireNonNull(javaServerOptions, "javaServerOptions");
+			return this;
+		}
+
+		/**
+		 * Set a cache of included spec files shared with other compiles, such as the other
+		 * specs in a batch compile, so that a spec file included by several specs is read
+		 * once. Default null, meaning included spec files are only cached for
+		 * this compile.
+		 * @param includeCache the cache, or null.
+		 * @return this Builder.
+		 */
+		public Builder withIncludeCache(final CachingIncludeProvider.SharedCache includeCache) {
+			this.includeCache = includeCache;
+			return this;
+		}
+
+		/**
+		 * Builds the {@link CompileOptions} instance.
+		 * @return the instance.
+		 */
+		public CompileOptions build() {
+			return new CompileOptions(this);
+		}
+	}
+}
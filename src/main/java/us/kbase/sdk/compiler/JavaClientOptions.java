@@ -0,0 +1,126 @@
+package us.kbase.sdk.compiler;
+
+/**
+ * Options for generated Java clients. Instances are created via {@link #getBuilder()}.
+ */
+public final class JavaClientOptions {
+
+	private static final JavaClientOptions DEFAULTS = getBuilder().build();
+
+	private final boolean httpClientTransport;
+	private final boolean futureMethods;
+	private final boolean batchCalls;
+
+	private JavaClientOptions(final Builder b) {
+		this.httpClientTransport = b.httpClientTransport;
+		this.futureMethods = b.futureMethods;
+		this.batchCalls = b.batchCalls;
+	}
+
+	/**
+	 * Get the options for a standard client.
+	 * @return the default options.
+	 */
+	public static JavaClientOptions defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * Check whether the client sends requests with a {@code java.net.http.HttpClient}, which
+	 * keeps connections alive between calls and can use HTTP/2, rather than opening a new
+	 * connection per call.
+	 * @return true if the client uses the HttpClient based transport.
+	 */
+	public boolean isHttpClientTransport() {
+		return httpClientTransport;
+	}
+
+	/**
+	 * Check whether the client has a {@code CompletableFuture} returning {@code fooAsync}
+	 * variant of each method in addition to the blocking method.
+	 * @return true if the client has future returning methods.
+	 */
+	public boolean isFutureMethods() {
+		return futureMethods;
+	}
+
+	/**
+	 * Check whether the client has a {@code newBatch()} method that starts a batch of calls
+	 * that are sent to the service in one JSON-RPC batch request.
+	 * @return true if the client supports batches.
+	 */
+	public boolean isBatchCalls() {
+		return batchCalls;
+	}
+
+	@Override
+	public String toString() {
+		return "JavaClientOptions [httpClientTransport=" + httpClientTransport +
+				", futureMethods=" + futureMethods + ", batchCalls=" + batchCalls + "]";
+	}
+
+	/**
+	 * Get a builder for {@link JavaClientOptions}.
+	 * @return the builder.
+	 */
+	public static Builder getBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * Builder for {@link JavaClientOptions}.
+	 */
+	public static final class Builder {
+		private boolean httpClientTransport = false;
+		private boolean futureMethods = false;
+		private boolean batchCalls = false;
+
+		private Builder() {}
+
+		/**
+		 * Set whether the client sends requests with a {@code java.net.http.HttpClient}
+		 * rather than opening a new connection per call. Default false.
+		 * @param httpClientTransport true to use the HttpClient based transport.
+		 * @return this Builder.
+		 */
+		public Builder withHttpClientTransport(final boolean httpClientTransport) {
+			this.httpClientTransport = httpClientTransport;
+			return this;
+		}
+
+		/**
+		 * Set whether the client has a {@code CompletableFuture} returning
+		 * {@code fooAsync} variant of each method. Asynchronous jobs, including those
+		 * started by the blocking methods, are polled by a scheduler shared by all clients
+		 * rather than a thread per job, and jobs that are due together are checked in one
+		 * request if the service supports it. Default false.
+		 * @param futureMethods true to generate the future returning methods.
+		 * @return this Builder.
+		 */
+		public Builder withFutureMethods(final boolean futureMethods) {
+			this.futureMethods = futureMethods;
+			return this;
+		}
+
+		/**
+		 * Set whether the client has a {@code newBatch()} method that starts a batch of
+		 * calls that are sent to the service in one request. If the service rejects batch
+		 * requests the calls are made one at a time. Batches aren't generated for
+		 * asynchronous or dynamic service clients. Default false.
+		 * @param batchCalls true to generate batch support.
+		 * @return this Builder.
+		 */
+		public Builder withBatchCalls(final boolean batchCalls) {
+			this.batchCalls = batchCalls;
+			return this;
+		}
+
+		/**
+		 * Builds the {@link JavaClientOptions} instance.
+		 * @return the instance.
+		 */
+		public JavaClientOptions build() {
+			return new JavaClientOptions(this);
+		}
+	}
+}
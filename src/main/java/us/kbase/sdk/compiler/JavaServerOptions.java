@@ -0,0 +1,168 @@
+package us.kbase.sdk.compiler;
+
+/**
+ * Options for generated Java servers. Instances are created via {@link #getBuilder()}.
+ *
+ * Some server settings are made per method in the spec rather than here, with lines in the
+ * comment of the method:
+ * <ul>
+ * <li>{@code @concurrency <max concurrent calls> [<max queued calls>]} limits the number of
+ * concurrent calls of the method.</li>
+ * <li>{@code @streaming <parameter> [<parameter> ...]} makes the server parse the listed list
+ * parameters while the method iterates over them, rather than reading them into memory.</li>
+ * </ul>
+ */
+public final class JavaServerOptions {
+
+	/** The Java version generated servers target if none is set. */
+	public static final int DEFAULT_TARGET_JAVA_VERSION = 17;
+
+	/** The earliest Java version with virtual threads. */
+	public static final int VIRTUAL_THREADS_JAVA_VERSION = 21;
+
+	private static final JavaServerOptions DEFAULTS = getBuilder().build();
+
+	private final int targetJavaVersion;
+	private final boolean virtualThreads;
+	private final boolean metrics;
+	private final boolean prometheusEndpoint;
+
+	private JavaServerOptions(final Builder b) {
+		this.targetJavaVersion = b.targetJavaVersion;
+		this.virtualThreads = b.virtualThreads;
+		this.metrics = b.metrics || b.prometheusEndpoint;
+		this.prometheusEndpoint = b.prometheusEndpoint;
+	}
+
+	/**
+	 * Get the options for a standard server.
+	 * @return the default options.
+	 */
+	public static JavaServerOptions defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * Get the Java feature version, e.g. 17, of the JVM that runs the generated server.
+	 * @return the target Java version.
+	 */
+	public int getTargetJavaVersion() {
+		return targetJavaVersion;
+	}
+
+	/**
+	 * Check whether the server started by the generated {@code main} method runs each request
+	 * on a virtual thread rather than on a thread from a fixed size pool.
+	 * @return true if the server uses virtual threads.
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Check whether the server records the latency, errors, and payload sizes of the calls of
+	 * each method, and has a {@code metrics} method that returns them.
+	 * @return true if the server records metrics.
+	 */
+	public boolean isMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Check whether the server serves its metrics in the Prometheus text format for GET
+	 * requests to {@code /metrics}, on the same port as the service.
+	 * @return true if the server has a Prometheus endpoint.
+	 */
+	public boolean isPrometheusEndpoint() {
+		return prometheusEndpoint;
+	}
+
+	@Override
+	public String toString() {
+		return "JavaServerOptions [targetJavaVersion=" + targetJavaVersion +
+				", virtualThreads=" + virtualThreads + ", metrics=" + metrics +
+				", prometheusEndpoint=" + prometheusEndpoint + "]";
+	}
+
+	/**
+	 * Get a builder for {@link JavaServerOptions}.
+	 * @return the builder.
+	 */
+	public static Builder getBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * Builder for {@link JavaServerOptions}.
+	 */
+	public static final class Builder {
+		private int targetJavaVersion = DEFAULT_TARGET_JAVA_VERSION;
+		private boolean virtualThreads = false;
+		private boolean metrics = false;
+		private boolean prometheusEndpoint = false;
+
+		private Builder() {}
+
+		/**
+		 * Set the Java feature version, e.g. 21, of the JVM that runs the generated server.
+		 * Default {@link JavaServerOptions#DEFAULT_TARGET_JAVA_VERSION}.
+		 * @param targetJavaVersion the target Java version.
+		 * @return this Builder.
+		 */
+		public Builder withTargetJavaVersion(final int targetJavaVersion) {
+			this.targetJavaVersion = targetJavaVersion;
+			return this;
+		}
+
+		/**
+		 * Set whether the server started by the generated {@code main} method runs each
+		 * request on a virtual thread. If the JVM running the server doesn't support virtual
+		 * threads the standard server is started. Default false.
+		 * @param virtualThreads true to run requests on virtual threads.
+		 * @return this Builder.
+		 */
+		public Builder withVirtualThreads(final boolean virtualThreads) {
+			this.virtualThreads = virtualThreads;
+			return this;
+		}
+
+		/**
+		 * Set whether the server records the latency, errors, and payload sizes of the calls
+		 * of each method, and has a {@code metrics} method that returns them. The metrics
+		 * are kept with lock-free counters. Default false.
+		 * @param metrics true to record metrics.
+		 * @return this Builder.
+		 */
+		public Builder withMetrics(final boolean metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+
+		/**
+		 * Set whether the server serves its metrics in the Prometheus text format for GET
+		 * requests to {@code /metrics}. Implies {@link #withMetrics(boolean)}. Default false.
+		 * @param prometheusEndpoint true to add the Prometheus endpoint.
+		 * @return this Builder.
+		 */
+		public Builder withPrometheusEndpoint(final boolean prometheusEndpoint) {
+			this.prometheusEndpoint = prometheusEndpoint;
+			return this;
+		}
+
+		/**
+		 * Builds the {@link JavaServerOptions} instance.
+		 * @return the instance.
+		 * @throws IllegalArgumentException if virtual threads are requested for a target Java
+		 * version without them.
+		 */
+		public JavaServerOptions build() {
+			if (virtualThreads && targetJavaVersion < VIRTUAL_THREADS_JAVA_VERSION) {
+				throw new IllegalArgumentException(String.format(
+						"Servers with virtual threads require a target Java version of at " +
+						"least %s, but the target is %s", VIRTUAL_THREADS_JAVA_VERSION,
+						targetJavaVersion));
+			}
+			return new JavaServerOptions(this);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package us.kbase.sdk.compiler;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import us.kbase.sdk.templates.TemplateFormatter;
+import us.kbase.sdk.util.FileSaver;
+
+/** Classes that generated Java clients and servers depend on when some of the
+ * {@link JavaClientOptions} or {@link JavaServerOptions} are set, and which are generated along
+ * with the clients and servers.
+ *
+ * Like the tuple classes, the classes are the same for every module and live in the
+ * {@value TupleClassGenerator#PACKAGE} package, so a class is only written if it doesn't
+ * already exist with the same content. The exception is the {@link #LIMITED_SERVLET}, which
+ * only has the {@link ServerFeature}s that the servers generated with it use.
+ */
+public enum JavaSupportClass {
+
+	/** The caller used by clients with {@link JavaClientOptions#isHttpClientTransport()}. */
+	POOLED_CALLER("PooledJsonClientCaller", "java_pooled_client_caller"),
+	/** Future utilities used by clients with {@link JavaClientOptions#isFutureMethods()}. */
+	CLIENT_FUTURES("ClientFutures", "java_client_futures"),
+	/** The base class for the batches of clients with {@link JavaClientOptions#isBatchCalls()}. */
+	BATCH("JsonRpcBatch", "java_client_batch"),
+	/** The annotation for the limits on concurrent calls of server methods. */
+	METHOD_LIMITS("JsonServerMethodLimits", "java_server_method_limits"),
+	/** The base class for servers with limited methods, streamed parameters,
+	 * {@link JavaServerOptions#isMetrics()}, or {@link JavaServerOptions#isVirtualThreads()}.
+	 */
+	LIMITED_SERVLET("LimitedJsonServerServlet", "java_limited_server_servlet"),
+	/** The method metrics used by the {@link #LIMITED_SERVLET}. */
+	METRICS("JsonServerMetrics", "java_server_metrics"),
+	/** The type of server method parameters that are streamed by the {@link #LIMITED_SERVLET}. */
+	STREAMING_LIST("JsonStreamingList", "java_streaming_list");
+
+	/** The features of the servers that extend the {@link JavaSupportClass#LIMITED_SERVLET}.
+	 * The servlet only depends on the support classes of the features it's generated with.
+	 */
+	public static enum ServerFeature {
+		/** Limits on the concurrent calls of methods, set with
+		 * {@link JavaSupportClass#METHOD_LIMITS}.
+		 */
+		METHOD_LIMITS,
+		/** {@link JavaServerOptions#isMetrics()}, recorded with
+		 * {@link JavaSupportClass#METRICS}.
+		 */
+		METRICS,
+		/** Streamed method parameters of the type {@link JavaSupportClass#STREAMING_LIST}. */
+		STREAMING,
+		/** {@link JavaServerOptions#isVirtualThreads()}. */
+		VIRTUAL_THREADS
+	}
+
+	// class and server features -> source
+	private static final ConcurrentMap<String, String> SOURCES = new ConcurrentHashMap<>();
+
+	private final String className;
+	private final String template;
+
+	private JavaSupportClass(final String className, final String template) {
+		this.className = className;
+		this.template = template;
+	}
+
+	/** Get the simple name of the class.
+	 * @return the class name.
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	/** Get the fully qualified name of the class.
+	 * @return the class name.
+	 */
+	public String getFullClassName() {
+		return TupleClassGenerator.PACKAGE + "." + className;
+	}
+
+	/** Get the path of the source file for the class relative to the source root.
+	 * @return the path.
+	 */
+	public String getPath() {
+		return getFullClassName().replace('.', '/') + ".java";
+	}
+
+	/** Get the source code for the class with none of the {@link ServerFeature}s.
+	 * @return the source code.
+	 */
+	public String getSource() {
+		return getSource(EnumSet.noneOf(ServerFeature.class));
+	}
+
+	/** Get the source code for the class.
+	 * @param features the features of the servers that use the class. Only the
+	 * {@link #LIMITED_SERVLET} depends on them.
+	 * @return the source code.
+	 */
+	public String getSource(final Set<ServerFeature> features) {
+		requireNonNull(features, "features");
+		final Set<ServerFeature> f = EnumSet.noneOf(ServerFeature.class);
+		if (this == LIMITED_SERVLET) {
+			f.addAll(features);
+		}
+		return SOURCES.computeIfAbsent(name() + f, k -> {
+			final StringWriter sw = new StringWriter();
+			TemplateFormatter.formatTemplate(template, Map.of(
+					"package", TupleClassGenerator.PACKAGE,
+					"limits", f.contains(ServerFeature.METHOD_LIMITS),
+					"metrics", f.contains(ServerFeature.METRICS),
+					"streaming", f.contains(ServerFeature.STREAMING),
+					"virtualThreads", f.contains(ServerFeature.VIRTUAL_THREADS)),
+					sw);
+			return sw.toString();
+		});
+	}
+
+	/** Write the class with none of the {@link ServerFeature}s to a source root unless it
+	 * already exists with the same content.
+	 * @param srcOut the source root.
+	 * @return true if the file was written.
+	 * @throws IOException if the file couldn't be read or written.
+	 */
+	public boolean write(final FileSaver srcOut) throws IOException {
+		return write(srcOut, EnumSet.noneOf(ServerFeature.class));
+	}
+
+	/** Write the class to a source root unless it already exists with the same content.
+	 * @param srcOut the source root.
+	 * @param features the features of the servers that use the class. Only the
+	 * {@link #LIMITED_SERVLET} depends on them.
+	 * @return true if the file was written.
+	 * @throws IOException if the file couldn't be read or written.
+	 */
+	public boolean write(final FileSaver srcOut, final Set<ServerFeature> features)
+			throws IOException {
+		return TupleClassGenerator.writeIfChanged(
+				getPath(), getSource(features), requireNonNull(srcOut, "srcOut"));
+	}
+}
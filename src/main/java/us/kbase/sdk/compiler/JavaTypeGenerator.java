@@ -1,18 +1,16 @@
 package us.kbase.sdk.compiler;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import static java.util.Objects.requireNonNull;
+
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.URI;
 import java.net.URL;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -36,40 +34,20 @@ import us.kbase.kidl.KbTuple;
 import us.kbase.kidl.KbType;
 import us.kbase.kidl.KbTypedef;
 import us.kbase.kidl.KbUnspecifiedObject;
-import us.kbase.kidl.KidlParseException;
 import us.kbase.kidl.KidlParser;
+import us.kbase.sdk.compiler.JavaSupportClass.ServerFeature;
 import us.kbase.sdk.util.DiskFileSaver;
 import us.kbase.sdk.util.FileSaveCodeWriter;
 import us.kbase.sdk.util.FileSaver;
 import us.kbase.sdk.util.TextUtils;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.googlecode.jsonschema2pojo.DefaultGenerationConfig;
-import com.googlecode.jsonschema2pojo.Jackson2Annotator;
-import com.googlecode.jsonschema2pojo.Schema;
-import com.googlecode.jsonschema2pojo.SchemaGenerator;
-import com.googlecode.jsonschema2pojo.SchemaMapper;
-import com.googlecode.jsonschema2pojo.rules.Rule;
-import com.googlecode.jsonschema2pojo.rules.RuleFactory;
-import com.sun.codemodel.JBlock;
 import com.sun.codemodel.JCodeModel;
-import com.sun.codemodel.JDefinedClass;
-import com.sun.codemodel.JExpr;
-import com.sun.codemodel.JExpression;
-import com.sun.codemodel.JFieldVar;
-import com.sun.codemodel.JMethod;
-import com.sun.codemodel.JMod;
-import com.sun.codemodel.JOp;
-import com.sun.codemodel.JPackage;
-import com.sun.codemodel.JType;
 
 public class JavaTypeGenerator {
-	private static final char[] propWordDelim = {'_', '-'};
-
 	private static final String defaultParentPackage = "us.kbase";
 	private static final String utilPackage = defaultParentPackage + ".common.service";
+	private static final String CONCURRENCY_TAG = "@concurrency";
+	private static final String STREAMING_TAG = "@streaming";
 	
 	public static JavaData processSpec(
 			final File specFile,
@@ -114,10 +92,36 @@ public class JavaTypeGenerator {
 			final Map<String, String> originalCode,
 			final String customClientClassName
 		) throws Exception {
+		return processSpec(services, srcOut, packageParent, createServer, url,
+				clientAsyncVersion, clientDynservVersion, semanticVersion, gitUrl,
+				gitCommitHash, originalCode, customClientClassName, CompileOptions.defaults());
+	}
+
+	/** Generate Java code for a parsed spec.
+	 * @param options the compile options. The Java POJO, client, and server options are used.
+	 */
+	public static JavaData processSpec(
+			final List<KbService> services,
+			final FileSaver srcOut, 
+			final String packageParent,
+			final boolean createServer,
+			final URL url,
+			final String clientAsyncVersion,
+			final String clientDynservVersion,
+			final String semanticVersion,
+			final String gitUrl, 
+			final String gitCommitHash,
+			final Map<String, String> originalCode,
+			final String customClientClassName,
+			final CompileOptions options
+		) throws Exception {
+		requireNonNull(options, "options");
 		JavaData data = prepareDataStructures(services);
 		outputData(data, srcOut, packageParent, createServer, url,
 				clientAsyncVersion, clientDynservVersion, semanticVersion, gitUrl,
-				gitCommitHash, originalCode, customClientClassName);
+				gitCommitHash, originalCode, customClientClassName,
+				options.isJavaLazyAdditionalProperties(), options.getJavaClientOptions(),
+				options.getJavaServerOptions());
 		return data;
 	}
 
@@ -189,191 +193,50 @@ public class JavaTypeGenerator {
 			final String gitUrl, 
 			final String gitCommitHash,
 			final Map<String, String> originalCode,
-			final String customClientClassName
+			final String customClientClassName,
+			final boolean lazyAdditionalProperties,
+			final JavaClientOptions clientOptions,
+			final JavaServerOptions serverOptions
 			) throws Exception {
 		if (packageParent.equals(".")) {  // Special value meaning top level package.
 			packageParent = "";
 		}
-		generatePojos(data, srcOutDir, packageParent);
+		generatePojos(data, srcOutDir, packageParent, lazyAdditionalProperties);
 		generateTupleClasses(data,srcOutDir, packageParent);
 		generateClientClass(data, srcOutDir, packageParent, url, clientAsyncVersion, 
-				clientDynservVersion, customClientClassName);
+				clientDynservVersion, customClientClassName, clientOptions);
+		if (clientOptions.isHttpClientTransport()) {
+			JavaSupportClass.POOLED_CALLER.write(srcOutDir);
+		}
+		if (clientOptions.isFutureMethods()) {
+			JavaSupportClass.CLIENT_FUTURES.write(srcOutDir);
+		}
+		if (clientOptions.isBatchCalls() && clientAsyncVersion == null &&
+				clientDynservVersion == null) {
+			JavaSupportClass.BATCH.write(srcOutDir);
+		}
 		if (createServers) {
 			generateServerClass(data, srcOutDir, packageParent, semanticVersion, gitUrl, 
-					gitCommitHash, originalCode);
+					gitCommitHash, originalCode, serverOptions);
 		}
 	}
 
 	private static void generatePojos(JavaData data, FileSaver srcOutDir, 
-	        String packageParent) throws Exception {
-        InMemorySchemaStore ss = new InMemorySchemaStore();
-		for (JavaType type : data.getTypes()) {
-		    URI id = new URI("file:/" + type.getModuleName() + "/" + type.getJavaClassName() + 
-		            ".json");
-			Set<Integer> tupleTypes = data.getTupleTypes();
-			ByteArrayOutputStream jsonFile = new ByteArrayOutputStream();
-			writeJsonSchema(jsonFile, packageParent, type, tupleTypes);
-			jsonFile.close();
-			InputStream is = new ByteArrayInputStream(jsonFile.toByteArray());
-			ss.addSchema(id, is);
-			is.close();
-		}
+	        String packageParent, boolean lazyAdditionalProperties) throws Exception {
 		JCodeModel codeModel = new JCodeModel();
-		DefaultGenerationConfig cfg = new DefaultGenerationConfig() {
-			@Override
-			public char[] getPropertyWordDelimiters() {
-				return propWordDelim;
-			}
-			@Override
-			public boolean isIncludeHashcodeAndEquals() {
-				return false;
-			}
-			@Override
-			public boolean isIncludeToString() {
-				return false;
-			}
-			@Override
-			public boolean isIncludeJsr303Annotations() {
-				return false;
-			}
-			@Override
-			public boolean isGenerateBuilders() {
-				return true;
-			}
-			@Override
-			public boolean isUseLongIntegers() {
-				return true;
-			}
-		};
-		RuleFactory rf = new RuleFactory(cfg, new Jackson2Annotator(), ss) {
-			@Override
-			public Rule<JPackage, JType> getObjectRule() {
-				return new JsonSchemaToPojoCustomObjectRule(this) {
-					@Override
-					public JType apply(String nodeName, JsonNode node,
-							JPackage _package, Schema schema) {
-						JType jclass = super.apply(nodeName, node, _package, schema);
-						if (jclass instanceof JDefinedClass) {
-							addToString((JDefinedClass)jclass);
-						}
-						return jclass;
-					}
-					
-				    private void addToString(JDefinedClass jclass) {
-				    	if (jclass.getMethod("toString", new JType[0]) != null)
-				    		return;
-				        JMethod toString = jclass.method(JMod.PUBLIC, String.class, "toString");
-				        JBlock body = toString.body();
-				        JExpression ret = JExpr.lit(jclass.name());
-				        boolean firstField = true;
-				        for (Map.Entry<String, JFieldVar> entry : jclass.fields().entrySet()) {
-				        	ret = JOp.plus(ret, JExpr.lit((firstField ? " [" : ", ") + entry.getKey() + "="));
-				        	ret = JOp.plus(ret, entry.getValue());
-				        	firstField = false;
-				        }
-				        ret = JOp.plus(ret, JExpr.lit("]"));
-				        body._return(ret);
-				        toString.annotate(Override.class);
-				    }
-				};
-			}
-			
-			@Override
-			public Rule<JFieldVar, JFieldVar> getDefaultRule() {
-				return new Rule<JFieldVar, JFieldVar>() {
-					@Override
-					public JFieldVar apply(String nodeName, JsonNode node,
-							JFieldVar field, Schema currentSchema) {
-						return field;
-					}
-				};
-			}
-		};
-		SchemaGenerator sg = new SchemaGenerator();
-		SchemaMapper sm = new SchemaMapper(rf, sg);
-		for (JavaType type : data.getTypes()) {
-			URL source = new URL("file:/" + type.getModuleName() + "/" + type.getJavaClassName() + ".json");
-			sm.generate(codeModel, type.getJavaClassName(), "", source);
-		}
+		PojoGenerator.generate(data.getTypes(), packageParent, codeModel, data.getTupleTypes(),
+				lazyAdditionalProperties);
 		FileSaveCodeWriter codeWriter = new FileSaveCodeWriter(srcOutDir);
 		codeModel.build(codeWriter, codeWriter);
 	}
-	
+
 	private static void generateTupleClasses(JavaData data, FileSaver srcOutDir, String packageParent) throws Exception {
-		Set<Integer> tupleTypes = data.getTupleTypes();
-		if (tupleTypes.size() > 0) {
-			String utilDir = utilPackage.replace('.', '/');
-			for (int tupleType : tupleTypes) {
-				if (tupleType < 1)
-					throw new KidlParseException("Wrong tuple type: " + tupleType);
-				String tupleFile = utilDir + "/Tuple" + tupleType + ".java";
-				StringBuilder sb = new StringBuilder();
-				for (int i = 0; i < tupleType; i++) {
-					if (sb.length() > 0)
-						sb.append(", ");
-					sb.append('T').append(i+1);
-				}
-				List<String> classLines = new ArrayList<String>(Arrays.asList(
-						"package " + utilPackage + ";",
-						"",
-						"import java.util.HashMap;",
-						"import java.util.Map;",
-						"import com.fasterxml.jackson.annotation.JsonAnyGetter;",
-						"import com.fasterxml.jackson.annotation.JsonAnySetter;",
-						"",
-						"public class Tuple" + tupleType + " <" + sb + "> {"
-						));
-				for (int i = 0; i < tupleType; i++) {
-					classLines.add("    private T" + (i + 1) + " e" + (i + 1) + ";");
-				}
-				classLines.add("    private Map<String, Object> additionalProperties = new HashMap<String, Object>();");
-				StringBuilder toStr = new StringBuilder();
-				for (int i = 0; i < tupleType; i++) {
-					classLines.addAll(Arrays.asList(
-							"",
-							"    public T" + (i + 1) + " getE" + (i + 1) + "() {",
-							"        return e" + (i + 1) + ";",
-							"    }",
-							"",
-							"    public void setE" + (i + 1) + "(T" + (i + 1) + " e" + (i + 1) + ") {",
-							"        this.e" + (i + 1) + " = e" + (i + 1) + ";",
-							"    }",
-							"",
-							"    public Tuple" + tupleType + "<" + sb + "> withE" + (i + 1) + "(T" + (i + 1) + " e" + (i + 1) + ") {",
-							"        this.e" + (i + 1) + " = e" + (i + 1) + ";",
-							"        return this;",
-							"    }"
-							));
-					if (i > 0)
-						toStr.append(", ");
-					toStr.append("e").append(i + 1).append("=\" + ").append("e").append(i + 1).append(" + \"");
-				}
-				classLines.addAll(Arrays.asList(
-						"",
-						"    @Override",
-						"    public String toString() {",
-						"        return \"Tuple" + tupleType + " [" + toStr + "]\";",
-						"    }",
-						"",
-						"    @JsonAnyGetter",
-						"    public Map<String, Object> getAdditionalProperties() {",
-						"        return this.additionalProperties;",
-						"    }",
-						"",
-						"    @JsonAnySetter",
-						"    public void setAdditionalProperties(String name, Object value) {",
-						"        this.additionalProperties.put(name, value);",
-						"    }",
-						"}"
-						));
-				TextUtils.writeFileLines(classLines, srcOutDir.openWriter(tupleFile));
-			}
-		}
+		TupleClassGenerator.write(data.getTupleTypes(), srcOutDir);
 	}
 
 	private static void generateClientClass(JavaData data, FileSaver srcOutDir,
 			String packageParent, URL url, String asyncVersion, String dynservVersion,
-			String clientClassName) throws Exception {
+			String clientClassName, JavaClientOptions clientOptions) throws Exception {
         if (asyncVersion != null) {
             if (Pattern.compile("[^a-zA-Z0-9]").matcher(asyncVersion).find())
                 throw new IllegalStateException("Unsupported non-alfanumeric characters in client " +
@@ -387,7 +250,11 @@ public class JavaTypeGenerator {
 			    clientClassName = TextUtils.capitalize(module.getModuleName()) + "Client";
 			}
 			String classFile = moduleDir + "/" + clientClassName + ".java";
-			String callerClass = model.ref(utilPackage + ".JsonClientCaller");
+			String callerClass = model.ref(clientOptions.isHttpClientTransport() ?
+					JavaSupportClass.POOLED_CALLER.getFullClassName() :
+					utilPackage + ".JsonClientCaller");
+			String httpClientClass = clientOptions.isHttpClientTransport() ?
+					model.ref("java.net.http.HttpClient") : null;
 			boolean anyAuth = false;
 			for (JavaFunc func : module.getFuncs()) {
 				if (func.isAuthCouldBeUsed()) {
@@ -417,6 +284,30 @@ public class JavaTypeGenerator {
 			}
             classLines.add("    private String serviceVersion = " + 
                     (serviceVersion == null ? "null" : ("\"" + serviceVersion + "\"")) + ";");
+            boolean futures = clientOptions.isFutureMethods();
+            // with the HttpClient transport, calls are asynchronous and need no executor
+            boolean futuresExecutor = futures && !clientOptions.isHttpClientTransport();
+            if (futuresExecutor) {
+                classLines.add("    private " + model.ref("java.util.concurrent.Executor") +
+                        " asyncExecutor = " + model.ref(JavaSupportClass.CLIENT_FUTURES.getFullClassName()) +
+                        ".defaultExecutor();");
+            }
+            if (futures && anyAsync) {
+                String futuresClass = model.ref(JavaSupportClass.CLIENT_FUTURES.getFullClassName());
+                classLines.add("    private final " + futuresClass + ".JobPoller jobPoller = " +
+                        futuresClass + ".newJobPoller(this::_checkJobsAsync);");
+            }
+            // batches bypass the caller, so they can't look up dynamic service URLs or run jobs
+            boolean batch = clientOptions.isBatchCalls() && asyncVersion == null &&
+                    dynservVersion == null;
+            List<String> batchLines = new ArrayList<String>();
+            if (batch) {
+                classLines.add("    private final " + model.ref("java.util.concurrent.atomic.AtomicBoolean") +
+                        " batchSupported = new " + model.ref("java.util.concurrent.atomic.AtomicBoolean") +
+                        "(true);");
+                // the read timeout set on the caller, which batch requests bypass
+                classLines.add("    private volatile Integer batchReadTimeOut = 1800000;  // 30 minutes");
+            }
             if (url != null) {
                 classLines.addAll(Arrays.asList(
                         "    private static URL DEFAULT_URL = null;",
@@ -458,6 +349,26 @@ public class JavaTypeGenerator {
             classLines.addAll(Arrays.asList(
                     "    }"
                     ));
+            if (httpClientClass != null) {
+                classLines.addAll(Arrays.asList(
+                        "",
+                        "    /** Constructs a client with a custom URL and no user credentials that sends",
+                        "     * requests with the given HTTP client.",
+                        "     * @param url the URL of the service.",
+                        "     * @param httpClient the HTTP client, e.g. from",
+                        "     * " + callerClass + ".newHttpClient(" + httpClientClass + ".Version.HTTP_2).",
+                        "     */",
+                        "    public " + clientClassName + "(" + urlClass + " url, " +
+                                httpClientClass + " httpClient) {",
+                        "        caller = new " + callerClass + "(url, null, httpClient);"
+                        ));
+                if (dynservVersion != null) {
+                    classLines.add(
+                            "        caller.setDynamic(true);"
+                            );
+                }
+                classLines.add("    }");
+            }
             if (anyAuth) {
                 //TODO update java common & remove exceptions
                 classLines.addAll(Arrays.asList(
@@ -479,8 +390,29 @@ public class JavaTypeGenerator {
                             "        caller.setDynamic(true);"
                             );
                 }
+                classLines.add("    }");
+                if (httpClientClass != null) {
+                    classLines.addAll(Arrays.asList(
+                            "",
+                            "    /** Constructs a client with a custom URL that sends requests with the",
+                            "     * given HTTP client.",
+                            "     * @param url the URL of the service.",
+                            "     * @param token the user's authorization token.",
+                            "     * @param httpClient the HTTP client, e.g. from",
+                            "     * " + callerClass + ".newHttpClient(" + httpClientClass + ".Version.HTTP_2).",
+                            "     */",
+                            "    public " + clientClassName + "(" + urlClass + " url, " +
+                                    tokenClass + " token, " + httpClientClass + " httpClient) {",
+                            "        caller = new " + callerClass + "(url, token, httpClient);"
+                            ));
+                    if (dynservVersion != null) {
+                        classLines.add(
+                                "        caller.setDynamic(true);"
+                                );
+                    }
+                    classLines.add("    }");
+                }
                 classLines.addAll(Arrays.asList(
-                        "    }",
                         "",
                         "    /** Constructs a client with a custom URL.",
                         "     * @param url the URL of the service.",
@@ -590,7 +522,20 @@ public class JavaTypeGenerator {
 					"     */",
 					"    public " + urlClass + " getURL() {",
 					"        return caller.getURL();",
-					"    }",
+					"    }"
+					));
+			if (httpClientClass != null) {
+				classLines.addAll(Arrays.asList(
+						"",
+						"    /** Get the HTTP client this client uses to send requests.",
+						"     * @return the HTTP client.",
+						"     */",
+						"    public " + httpClientClass + " getHttpClient() {",
+						"        return caller.getHttpClient();",
+						"    }"
+						));
+			}
+			classLines.addAll(Arrays.asList(
 					"",
 					"    /** Set the timeout between establishing a connection to a server and",
 					"     * receiving a response. A value of zero or null implies no timeout.",
@@ -598,7 +543,11 @@ public class JavaTypeGenerator {
 					"     * attempting to read from a server.",
 					"     */",
 					"    public void setConnectionReadTimeOut(Integer milliseconds) {",
-					"        this.caller.setConnectionReadTimeOut(milliseconds);",
+					"        this.caller.setConnectionReadTimeOut(milliseconds);"));
+			if (batch) {
+				classLines.add("        this.batchReadTimeOut = milliseconds;");
+			}
+			classLines.addAll(Arrays.asList(
 					"    }",
 					"",
 					"    /** Check if this client allows insecure http (vs https) connections.",
@@ -694,6 +643,24 @@ public class JavaTypeGenerator {
                         "        this.asyncJobCheckMaxTimeMs = newValue;",
                         "    }"
 			            ));
+				if (clientOptions.isFutureMethods()) {
+					classLines.addAll(Arrays.asList(
+							"",
+							"    /** Set whether the jobs of this client that are due to be checked at about",
+							"     * the same time are checked with one call to " + moduleName + "._check_jobs,",
+							"     * which the service must provide. If the call fails, the jobs are",
+							"     * checked one at a time and batch checks are not tried again.",
+							"     * @param enabled true to check jobs in batches. Default false.",
+							"     */",
+							"    public void setAsyncJobBatchChecks(boolean enabled) {",
+							"        jobPoller.setBatchChecks(enabled);",
+							"    }",
+							"",
+							"    public boolean isAsyncJobBatchChecks() {",
+							"        return jobPoller.isBatchChecks();",
+							"    }"
+							));
+				}
 			}
             classLines.addAll(Arrays.asList(
                     "",
@@ -724,6 +691,10 @@ public class JavaTypeGenerator {
                         "    }"
                         ));
 			}
+			if (futures) {
+				addFutureHelpers(classLines, model, module.getOriginal().getModuleName(),
+						anyAsync, futuresExecutor);
+			}
 			boolean isStatusInKidl = false;
             String listClass = model.ref("java.util.List");
 			for (JavaFunc func : module.getFuncs()) {
@@ -787,23 +758,12 @@ public class JavaTypeGenerator {
                     classLines.addAll(Arrays.asList(
                             "    public " + retTypeName + " " + func.getJavaName() + "(" + funcParams + ") " + exceptions+ " {",
                             "        String jobId = _" + func.getJavaName() + "Submit(" + funcParamNames + ");",
-                            "        " + trFull + " retType = new " + trFull + "() {};",
-                            "        long asyncJobCheckTimeMs = this.asyncJobCheckTimeMs;",
-                            "        while (true) {",
-                            "            if (Thread.currentThread().isInterrupted())",
-                            "                throw new " + model.ref(utilPackage + ".JsonClientException") + "(\"Thread was interrupted\");",
-                            "            try { ",
-                            "                Thread.sleep(asyncJobCheckTimeMs);",
-                            "            } catch(Exception ex) {",
-                            "                throw new " + model.ref(utilPackage + ".JsonClientException") + "(\"Thread was interrupted\", ex);",
-                            "            }",
-                            "            asyncJobCheckTimeMs = Math.min(asyncJobCheckTimeMs * this.asyncJobCheckTimeScalePercent / 100, this.asyncJobCheckMaxTimeMs);",
-                            "            " + jobStateType + "<" + innerRetType + "> res = _checkJob(jobId, retType);",
-                            "            if (res.getFinished() != 0L)",
-                            "                return" + (func.getRetMultyType() == null ? (retType == null ? "" : " res.getResult().get(0)") : " res.getResult()") + ";",
-                            "        }",
-                            "    }"
+                            "        " + trFull + " retType = new " + trFull + "() {};"
                             ));
+                    classLines.addAll(waitForJobLines(model, futures, jobStateType + "<" + innerRetType + ">",
+                            "retType", "res", func.getRetMultyType() == null ?
+                                    (retType == null ? null : "res.getResult().get(0)") : "res.getResult()"));
+                    classLines.add("    }");
 			    } else {
 			        classLines.add("");
 			        printFuncComment(func, originalToJavaTypes, packageParent, classLines, true);
@@ -842,6 +802,25 @@ public class JavaTypeGenerator {
 			                    ));					
 			        }
 			    }
+			    List<String> paramNames = new ArrayList<String>();
+			    for (JavaFuncParam param : func.getParams()) {
+			        paramNames.add(param.getJavaName());
+			    }
+			    if (batch) {
+			        addBatchMethod(batchLines, model, module.getOriginal().getModuleName(),
+			                func.getOriginal().getName(), func.getJavaName(), funcParams.toString(),
+			                paramNames, retType == null ? null : retTypeName,
+			                func.getRetMultyType() != null, func.isAuthRequired());
+			    }
+			    if (futures) {
+			        classLines.add("");
+			        printFuncComment(func, originalToJavaTypes, packageParent, classLines, true);
+			        addFutureMethod(classLines, model, module.getOriginal().getModuleName(),
+			                func.getOriginal().getName(), func.getJavaName(), funcParams.toString(),
+			                paramNames, retType == null ? null : retTypeName,
+			                func.getRetMultyType() != null,
+			                asyncVersion != null || func.isAuthRequired(), asyncVersion != null);
+			    }
 			}
 			if (!isStatusInKidl) {
                 classLines.add("");
@@ -873,23 +852,11 @@ public class JavaTypeGenerator {
                             "        " + listClass + "<String> res1 = caller.jsonrpcCall(\"" + module.getOriginal().getModuleName() + "._" + 
                                     "status_submit" + "\", args, retType1, true, true, " + contextField + ");",
                             "        String jobId = res1.get(0);",
-			                "        " + trFull2 + " retType2 = new " + trFull2 + "() {};",
-                            "        long asyncJobCheckTimeMs = this.asyncJobCheckTimeMs;",
-			                "        while (true) {",
-			                "            if (Thread.currentThread().isInterrupted())",
-			                "                throw new " + model.ref(utilPackage + ".JsonClientException") + "(\"Thread was interrupted\");",
-			                "            try { ",
-			                "                Thread.sleep(asyncJobCheckTimeMs);",
-			                "            } catch(Exception ex) {",
-			                "                throw new " + model.ref(utilPackage + ".JsonClientException") + "(\"Thread was interrupted\", ex);",
-			                "            }",
-                            "            asyncJobCheckTimeMs = Math.min(asyncJobCheckTimeMs * this.asyncJobCheckTimeScalePercent / 100, this.asyncJobCheckMaxTimeMs);",
-			                "            " + jobStateType + "<" + innerRetType + "> res2 = _checkJob(jobId, retType2);",
-			                "            if (res2.getFinished() != 0L)",
-			                "                return res2.getResult().get(0);",
-			                "        }",
-			                "    }"
+			                "        " + trFull2 + " retType2 = new " + trFull2 + "() {};"
 			                ));
+			        classLines.addAll(waitForJobLines(model, futures, jobStateType + "<" + innerRetType + ">",
+			                "retType2", "res2", "res2.getResult().get(0)"));
+			        classLines.add("    }");
 			    } else {
                     String typeReferenceClass = model.ref("com.fasterxml.jackson.core.type.TypeReference");
                     String trFull = typeReferenceClass + "<" + listClass + "<" + mapType + ">>";
@@ -903,6 +870,20 @@ public class JavaTypeGenerator {
                             "    }"
                             ));
 			    }
+			    if (futures) {
+			        classLines.add("");
+			        addFutureMethod(classLines, model, module.getOriginal().getModuleName(),
+			                "status", "status", funcParams.toString(), new ArrayList<String>(),
+			                mapType, false, asyncVersion != null, asyncVersion != null);
+			    }
+			    if (batch) {
+			        addBatchMethod(batchLines, model, module.getOriginal().getModuleName(),
+			                "status", "status", funcParams.toString(), new ArrayList<String>(),
+			                mapType, false, false);
+			    }
+			}
+			if (batch) {
+			    addBatchClass(classLines, model, batchLines, clientOptions.isHttpClientTransport());
 			}
 			classLines.add("}");
 			List<String> headerLines = new ArrayList<String>(Arrays.asList(
@@ -916,6 +897,352 @@ public class JavaTypeGenerator {
 		}
 	}
 
+	/* Add the newBatch() method and the RpcBatch class, which adds calls to a batch with the
+	 * same parameters as the client methods. batchLines holds the batch methods.
+	 */
+	private static void addBatchClass(
+			final List<String> classLines,
+			final JavaImportHolder model,
+			final List<String> batchLines,
+			final boolean httpClientTransport) {
+		final String batchClass = model.ref(JavaSupportClass.BATCH.getFullClassName());
+		final String listClass = model.ref("java.util.List");
+		final String typeReferenceClass = model.ref("com.fasterxml.jackson.core.type.TypeReference");
+		final String contextType = model.ref(utilPackage + ".RpcContext");
+		// the batch request can't use the caller's trust all certificates setting, so
+		// such batches make their calls one at a time
+		final String httpClient = httpClientTransport ? "caller.getHttpClient()" :
+				"caller.isAllSSLCertificatesTrusted() ? null : " + batchClass +
+				".defaultHttpClient()";
+		classLines.addAll(Arrays.asList(
+				"",
+				"    /** Start a batch of calls that are sent to the service in one request. Add calls",
+				"     * with the methods of the batch, which take the same parameters as the methods",
+				"     * of this client, and send them with execute(). If the service doesn't accept",
+				"     * batch requests, the calls are made one at a time.",
+				"     * @return the batch.",
+				"     */",
+				"    public RpcBatch newBatch() {",
+				"        return new RpcBatch();",
+				"    }",
+				"",
+				"    /** A batch of calls to the service. */",
+				"    public class RpcBatch extends " + batchClass + " {",
+				"",
+				"        private RpcBatch() {",
+				"            super(caller.getURL(), caller.getToken(), caller.isInsecureHttpConnectionAllowed(),",
+				"                    " + httpClient + ", batchReadTimeOut, batchSupported);",
+				"        }",
+				"",
+				"        @Override",
+				"        protected <R> R callSequentially(String method, " + listClass +
+						"<Object> args, " + typeReferenceClass + "<R> retType, boolean needRet, " +
+						"boolean authRequired, " + contextType + "[] context) throws " +
+						model.ref("java.io.IOException") + ", " +
+						model.ref(utilPackage + ".JsonClientException") + " {",
+				"            return caller.jsonrpcCall(method, args, retType, needRet, " +
+						"authRequired, context, serviceVersion);",
+				"        }"
+				));
+		classLines.addAll(batchLines);
+		classLines.add("    }");
+	}
+
+	/* Add the method of the RpcBatch class that adds a call of a function to the batch.
+	 * retTypeName is null if the function returns nothing.
+	 */
+	private static void addBatchMethod(
+			final List<String> batchLines,
+			final JavaImportHolder model,
+			final String moduleName,
+			final String funcName,
+			final String javaName,
+			final String funcParams,
+			final List<String> paramNames,
+			final String retTypeName,
+			final boolean multiRet,
+			final boolean authRequired) {
+		final String resultClass = model.ref(JavaSupportClass.BATCH.getFullClassName()) +
+				".Result";
+		final String listClass = model.ref("java.util.List");
+		final String arrayListClass = model.ref("java.util.ArrayList");
+		final String typeReferenceClass = model.ref("com.fasterxml.jackson.core.type.TypeReference");
+		final String retTypeRef;
+		final String extract;
+		if (retTypeName == null) {
+			retTypeRef = typeReferenceClass + "<Object>";
+			extract = "res -> null";
+		} else if (multiRet) {
+			retTypeRef = typeReferenceClass + "<" + retTypeName + ">";
+			extract = "res -> res";
+		} else {
+			retTypeRef = typeReferenceClass + "<" + listClass + "<" + retTypeName + ">>";
+			extract = "res -> res.get(0)";
+		}
+		batchLines.addAll(Arrays.asList(
+				"",
+				"        /** Add a call of " + funcName + " to the batch. */",
+				"        public " + resultClass + "<" + (retTypeName == null ? "Void" : retTypeName) +
+						"> " + javaName + "(" + funcParams + ") {",
+				"            " + listClass + "<Object> args = new " + arrayListClass + "<Object>();"
+				));
+		for (final String param: paramNames) {
+			batchLines.add("            args.add(" + param + ");");
+		}
+		batchLines.addAll(Arrays.asList(
+				"            " + retTypeRef + " retType = new " + retTypeRef + "() {};",
+				"            return add(\"" + moduleName + "." + funcName + "\", args, retType, " +
+						(retTypeName != null) + ", " + authRequired + ", jsonRpcContext, " +
+						extract + ");",
+				"        }"
+				));
+	}
+
+	/* Lines that wait for the asynchronous job jobId to finish and return its result. With
+	 * future methods the job is registered with the client's job poller, which shares status
+	 * checks between jobs, and otherwise the calling thread polls the job. ret is the
+	 * expression for the return value, or null if the function returns nothing.
+	 */
+	private static List<String> waitForJobLines(
+			final JavaImportHolder model,
+			final boolean futures,
+			final String stateType,
+			final String retTypeVar,
+			final String resVar,
+			final String ret) {
+		final List<String> lines = new ArrayList<String>();
+		final String retStatement = ret == null ? "return;" : "return " + ret + ";";
+		if (futures) {
+			lines.add("        " + stateType + " " + resVar + " = _waitForJob(jobId, " +
+					retTypeVar + ");");
+			if (ret != null) {
+				lines.add("        " + retStatement);
+			}
+			return lines;
+		}
+		final String exceptionClass = model.ref(utilPackage + ".JsonClientException");
+		lines.addAll(Arrays.asList(
+				"        long asyncJobCheckTimeMs = this.asyncJobCheckTimeMs;",
+				"        while (true) {",
+				"            if (Thread.currentThread().isInterrupted())",
+				"                throw new " + exceptionClass + "(\"Thread was interrupted\");",
+				"            try { ",
+				"                Thread.sleep(asyncJobCheckTimeMs);",
+				"            } catch(Exception ex) {",
+				"                throw new " + exceptionClass + "(\"Thread was interrupted\", ex);",
+				"            }",
+				"            asyncJobCheckTimeMs = Math.min(asyncJobCheckTimeMs * this.asyncJobCheckTimeScalePercent / 100, this.asyncJobCheckMaxTimeMs);",
+				"            " + stateType + " " + resVar + " = _checkJob(jobId, " + retTypeVar + ");",
+				"            if (" + resVar + ".getFinished() != 0L)",
+				"                " + retStatement,
+				"        }"
+				));
+		return lines;
+	}
+
+	/* Add the methods that the fooAsync methods of a client are built on. _callAsync makes a
+	 * call without blocking, either with the HttpClient transport or by running the blocking
+	 * call on the client's executor, and _pollJobAsync registers an asynchronous job with the
+	 * client's job poller, which checks jobs that are due together in one request if the
+	 * service supports it.
+	 */
+	private static void addFutureHelpers(
+			final List<String> classLines,
+			final JavaImportHolder model,
+			final String moduleName,
+			final boolean anyAsync,
+			final boolean futuresExecutor) {
+		final String futureClass = model.ref("java.util.concurrent.CompletableFuture");
+		final String listClass = model.ref("java.util.List");
+		final String typeReferenceClass = model.ref("com.fasterxml.jackson.core.type.TypeReference");
+		final String contextType = model.ref(utilPackage + ".RpcContext");
+		if (futuresExecutor) {
+			final String executorClass = model.ref("java.util.concurrent.Executor");
+			classLines.addAll(Arrays.asList(
+					"",
+					"    /** Get the executor that runs the calls made by the fooAsync methods.",
+					"     * @return the executor.",
+					"     */",
+					"    public " + executorClass + " getAsyncExecutor() {",
+					"        return this.asyncExecutor;",
+					"    }",
+					"",
+					"    /** Set the executor that runs the calls made by the fooAsync methods.",
+					"     * Each call blocks an executor thread until the server responds. By default",
+					"     * an executor shared by all clients that creates threads as needed is used.",
+					"     * @param executor the executor.",
+					"     */",
+					"    public void setAsyncExecutor(" + executorClass + " executor) {",
+					"        if (executor == null)",
+					"            throw new NullPointerException(\"executor\");",
+					"        this.asyncExecutor = executor;",
+					"    }"
+					));
+		}
+		classLines.addAll(Arrays.asList(
+				"",
+				"    protected <T> " + futureClass + "<T> _callAsync(String method, " +
+						listClass + "<Object> args, " + typeReferenceClass + "<T> retType, " +
+						"boolean needRet, boolean authRequired, " + contextType + "[] context, " +
+						"String serviceVersion) {",
+				futuresExecutor ?
+						"        return " + model.ref(JavaSupportClass.CLIENT_FUTURES.getFullClassName()) + ".supply(() -> caller.jsonrpcCall(" +
+						"method, args, retType, needRet, authRequired, context, serviceVersion), " +
+						"this.asyncExecutor);" :
+						"        return caller.jsonrpcCallAsync(" +
+						"method, args, retType, needRet, authRequired, context, serviceVersion);",
+				"    }"
+				));
+		if (anyAsync) {
+			final String arrayListClass = model.ref("java.util.ArrayList");
+			final String jobStateType = model.ref(utilPackage + ".JobState");
+			final String exceptionClass = model.ref(utilPackage + ".JsonClientException");
+			final String trFull = typeReferenceClass + "<" + listClass + "<" + jobStateType + "<T>>>";
+			final String trBatch = typeReferenceClass + "<" + listClass + "<" + listClass +
+					"<" + jobStateType + "<Object>>>>";
+			classLines.addAll(Arrays.asList(
+					"",
+					"    /** Check the state of several jobs with one request. The service must have",
+					"     * a " + moduleName + "._check_jobs method that takes a list of job IDs and",
+					"     * returns a list of job states.",
+					"     */",
+					"    protected " + futureClass + "<" + listClass + "<" + jobStateType +
+							"<Object>>> _checkJobsAsync(" + listClass + "<String> jobIds) {",
+					"        " + listClass + "<Object> args = new " + arrayListClass + "<Object>();",
+					"        args.add(jobIds);",
+					"        " + trBatch + " retType = new " + trBatch + "() {};",
+					"        return _callAsync(\"" + moduleName + "._check_jobs\", args, retType, " +
+							"true, true, new " + contextType + "[0], null)",
+					"                .thenApply(res -> res.get(0));",
+					"    }",
+					"",
+					"    protected <T> " + futureClass + "<" + jobStateType + "<T>> _pollJobAsync(" +
+							"String jobId, " + trFull + " retType) {",
+					"        " + listClass + "<Object> args = new " + arrayListClass + "<Object>();",
+					"        args.add(jobId);",
+					"        return jobPoller.poll(jobId,",
+					"                () -> _callAsync(\"" + moduleName + "._check_job\", args, retType, " +
+							"true, true, new " + contextType + "[0], null)",
+					"                        .thenApply(res -> res.get(0)),",
+					"                this.asyncJobCheckTimeMs, this.asyncJobCheckTimeScalePercent,",
+					"                this.asyncJobCheckMaxTimeMs);",
+					"    }",
+					"",
+					"    protected <T> " + jobStateType + "<T> _waitForJob(String jobId, " + trFull +
+							" retType) throws " + model.ref("java.io.IOException") + ", " +
+							exceptionClass + " {",
+					"        " + futureClass + "<" + jobStateType + "<T>> res = _pollJobAsync(jobId, retType);",
+					"        try {",
+					"            return res.get();",
+					"        } catch (InterruptedException ex) {",
+					"            res.cancel(false);",
+					"            throw new " + exceptionClass + "(\"Thread was interrupted\", ex);",
+					"        } catch (" + model.ref("java.util.concurrent.ExecutionException") + " ex) {",
+					"            Throwable cause = ex.getCause();",
+					"            if (cause instanceof " + model.ref("java.io.IOException") + ")",
+					"                throw (" + model.ref("java.io.IOException") + ") cause;",
+					"            if (cause instanceof " + exceptionClass + ")",
+					"                throw (" + exceptionClass + ") cause;",
+					"            if (cause instanceof RuntimeException)",
+					"                throw (RuntimeException) cause;",
+					"            if (cause instanceof Error)",
+					"                throw (Error) cause;",
+					"            throw new " + exceptionClass + "(cause.getMessage(), cause);",
+					"        }",
+					"    }"
+					));
+		}
+	}
+
+	/* Add the fooAsync variant of a client method. retTypeName is null if the function
+	 * returns nothing. For functions run as asynchronous jobs, the job is submitted and then
+	 * polled until it finishes.
+	 */
+	private static void addFutureMethod(
+			final List<String> classLines,
+			final JavaImportHolder model,
+			final String moduleName,
+			final String funcName,
+			final String javaName,
+			final String funcParams,
+			final List<String> paramNames,
+			final String retTypeName,
+			final boolean multiRet,
+			final boolean authRequired,
+			final boolean asyncJob) {
+		final String futureClass = model.ref("java.util.concurrent.CompletableFuture");
+		final String listClass = model.ref("java.util.List");
+		final String arrayListClass = model.ref("java.util.ArrayList");
+		final String typeReferenceClass = model.ref("com.fasterxml.jackson.core.type.TypeReference");
+		final String contextType = model.ref(utilPackage + ".RpcContext");
+		final String contextField = "jsonRpcContext";
+		final String futureType = retTypeName == null ? "Void" : retTypeName;
+		// the type of the RPC result and how to get the return value from it, and the same
+		// for the result of a finished job
+		final String retTypeRef;
+		final String result;
+		final String jobRetType;
+		final String jobResult;
+		if (retTypeName == null) {
+			retTypeRef = typeReferenceClass + "<Object>";
+			result = "null";
+			jobRetType = "Object";
+			jobResult = "null";
+		} else if (multiRet) {
+			retTypeRef = typeReferenceClass + "<" + retTypeName + ">";
+			result = "res";
+			jobRetType = retTypeName;
+			jobResult = "res.getResult()";
+		} else {
+			retTypeRef = typeReferenceClass + "<" + listClass + "<" + retTypeName + ">>";
+			result = "res.get(0)";
+			jobRetType = listClass + "<" + retTypeName + ">";
+			jobResult = "res.getResult().get(0)";
+		}
+		classLines.add("    public " + futureClass + "<" + futureType + "> " + javaName +
+				"Async(" + funcParams + ") {");
+		if (asyncJob) {
+			classLines.addAll(Arrays.asList(
+					"        if (this.serviceVersion != null) {",
+					"            if (" + contextField + " == null || " + contextField + ".length == 0 || " + contextField + "[0] == null)",
+					"                " + contextField + " = new " + contextType + "[] {new " + contextType + "()};",
+					"            " + contextField + "[0].getAdditionalProperties().put(\"service_ver\", this.serviceVersion);",
+					"        }"
+					));
+		}
+		classLines.add("        " + listClass + "<Object> args = new " + arrayListClass + "<Object>();");
+		for (final String param: paramNames) {
+			classLines.add("        args.add(" + param + ");");
+		}
+		if (asyncJob) {
+			final String jobStateType = model.ref(utilPackage + ".JobState");
+			final String submitType = typeReferenceClass + "<" + listClass + "<String>>";
+			final String trFull = typeReferenceClass + "<" + listClass + "<" + jobStateType +
+					"<" + jobRetType + ">>>";
+			classLines.addAll(Arrays.asList(
+					"        " + submitType + " submitType = new " + submitType + "() {};",
+					"        " + trFull + " retType = new " + trFull + "() {};",
+					"        return _callAsync(\"" + moduleName + "._" + funcName + "_submit\", args, " +
+							"submitType, true, true, " + contextField + ", null)",
+					"                .thenCompose(res -> _pollJobAsync(res.get(0), retType))",
+					"                .thenApply(res -> " + jobResult + ");",
+					"    }"
+					));
+		} else {
+			final String call = "_callAsync(\"" + moduleName + "." + funcName + "\", args, " +
+					"retType, " + (retTypeName != null) + ", " + authRequired + ", " +
+					contextField + ", this.serviceVersion)";
+			classLines.add("        " + retTypeRef + " retType = new " + retTypeRef + "() {};");
+			if (multiRet) {
+				classLines.add("        return " + call + ";");
+			} else {
+				classLines.add("        return " + call);
+				classLines.add("                .thenApply(res -> " + result + ");");
+			}
+			classLines.add("    }");
+		}
+	}
+
     private static StringBuilder appendWithComma(StringBuilder text, String item) {
         if (text.length() > 0)
             text.append(", ");
@@ -1066,7 +1393,7 @@ public class JavaTypeGenerator {
 	
 	private static void generateServerClass(JavaData data, FileSaver srcOutDir, String packageParent,
 	        String semanticVersion, String gitUrl, String gitCommitHash, 
-	        Map<String, String> originalCode) throws Exception {
+	        Map<String, String> originalCode, JavaServerOptions serverOptions) throws Exception {
 	    if (semanticVersion == null)
 	        semanticVersion = "";
 	    if (gitUrl == null)
@@ -1074,6 +1401,17 @@ public class JavaTypeGenerator {
 	    if (gitCommitHash == null)
 	        gitCommitHash = "";
 		Map<String, JavaType> originalToJavaTypes = getOriginalToJavaTypesMap(data);
+		// the support classes are shared by the servers of all the modules
+		Set<ServerFeature> features = getServerFeatures(data, serverOptions);
+		if (!features.isEmpty()) {
+			JavaSupportClass.LIMITED_SERVLET.write(srcOutDir, features);
+			if (features.contains(ServerFeature.METHOD_LIMITS))
+				JavaSupportClass.METHOD_LIMITS.write(srcOutDir);
+			if (features.contains(ServerFeature.METRICS))
+				JavaSupportClass.METRICS.write(srcOutDir);
+			if (features.contains(ServerFeature.STREAMING))
+				JavaSupportClass.STREAMING_LIST.write(srcOutDir);
+		}
 		for (JavaModule module : data.getModules()) {
 			String moduleDir = sub(packageParent, module.getModulePackage()).replace('.', '/');
 			JavaImportHolder model = new JavaImportHolder(sub(packageParent, module.getModulePackage()));
@@ -1081,10 +1419,24 @@ public class JavaTypeGenerator {
 			String classFile = moduleDir + "/" + serverClassName + ".java";
 			if (originalCode == null)
 			    originalCode = parsePrevCode(srcOutDir.getAsFileOrNull(classFile), module.getFuncs());
+			Map<String, int[]> limits = new HashMap<String, int[]>();
+			Map<String, Set<String>> streamedParams = new HashMap<String, Set<String>>();
+			for (JavaFunc func : module.getFuncs()) {
+				int[] limit = getConcurrencyLimit(func);
+				if (limit != null)
+					limits.put(func.getOriginal().getName(), limit);
+				Set<String> streamed = getStreamedParams(func);
+				if (!streamed.isEmpty())
+					streamedParams.put(func.getOriginal().getName(), streamed);
+			}
+			boolean limited = !limits.isEmpty() || !streamedParams.isEmpty() ||
+					serverOptions.isVirtualThreads() || serverOptions.isMetrics();
+			String servletClass = limited ? JavaSupportClass.LIMITED_SERVLET.getFullClassName() :
+					utilPackage + ".JsonServerServlet";
 			List<String> classLines = new ArrayList<String>();
 			printModuleComment(module, classLines);
 			classLines.addAll(Arrays.asList(
-					"public class " + serverClassName + " extends " + model.ref(utilPackage + ".JsonServerServlet") + " {",
+					"public class " + serverClassName + " extends " + model.ref(servletClass) + " {",
 					"    private static final long serialVersionUID = 1L;",
                     "    private static final String version = \"" + semanticVersion + "\";",
                     "    private static final String gitUrl = \"" + gitUrl + "\";",
@@ -1100,6 +1452,8 @@ public class JavaTypeGenerator {
 			if (serviceName == null || serviceName.trim().isEmpty())
 				serviceName = module.getOriginal().getModuleName();
 			classLines.add("        super(\"" + serviceName + "\");");
+			if (serverOptions.isMetrics())
+				classLines.add("        enableMetrics(" + serverOptions.isPrometheusEndpoint() + ");");
 			classLines.add("        //BEGIN_CONSTRUCTOR");
 			classLines.addAll(splitCodeLines(originalCode.get(PrevCodeParser.CONSTRUCTOR)));
 			classLines.addAll(Arrays.asList(
@@ -1107,9 +1461,12 @@ public class JavaTypeGenerator {
 					"    }"
 					));
 			boolean isStatusInKidl = false;
+			boolean isMetricsInKidl = false;
 			for (JavaFunc func : module.getFuncs()) {
 			    if (func.getOriginal().getName().equals("status"))
 			        isStatusInKidl = true;
+			    if (func.getOriginal().getName().equals("metrics"))
+			        isMetricsInKidl = true;
 				JavaType retType = null;
 				if (func.getRetMultyType() == null) {
 					if (func.getReturns().size() > 0) {
@@ -1119,8 +1476,17 @@ public class JavaTypeGenerator {
 					retType = func.getRetMultyType();
 				}
 				StringBuilder funcParams = new StringBuilder();
-				for (JavaFuncParam param : func.getParams())
-				    appendWithComma(funcParams, getJType(param.getType(), packageParent, model)).append(" ").append(param.getJavaName());
+				Set<String> streamed = streamedParams.get(func.getOriginal().getName());
+				for (JavaFuncParam param : func.getParams()) {
+					String paramType;
+					if (streamed != null && streamed.contains(param.getOriginal().getName())) {
+						paramType = model.ref(JavaSupportClass.STREAMING_LIST.getFullClassName()) + "<" +
+								getJType(param.getType().getInternalTypes().get(0), packageParent, model) + ">";
+					} else {
+						paramType = getJType(param.getType(), packageParent, model);
+					}
+					appendWithComma(funcParams, paramType).append(" ").append(param.getJavaName());
+				}
 				if (func.isAuthCouldBeUsed())
 				    appendWithComma(funcParams, model.ref("us.kbase.auth.AuthToken")).append(" authPart");
                 appendWithComma(funcParams, model.ref(utilPackage + ".RpcContext")).append(" ").append("jsonRpcContext");
@@ -1131,6 +1497,10 @@ public class JavaTypeGenerator {
 						"rpc = \"" + module.getOriginal().getModuleName() + "." + func.getOriginal().getName() + "\"" +
 						(func.getRetMultyType() == null ? "" : ", tuple = true") + 
 						(func.isAuthOptional() ? ", authOptional=true" : "") + ")");
+				int[] limit = limits.get(func.getOriginal().getName());
+				if (limit != null)
+					classLines.add("    @" + model.ref(JavaSupportClass.METHOD_LIMITS.getFullClassName()) +
+							"(maxConcurrent = " + limit[0] + ", maxQueued = " + limit[1] + ")");
 				classLines.add("    public " + retTypeName + " " + func.getJavaName() + "(" + funcParams + ") throws Exception {");
 				
 				List<String> funcLines = new LinkedList<String>();
@@ -1194,13 +1564,24 @@ public class JavaTypeGenerator {
                         "    }"
                         ));
 			}
+			if (serverOptions.isMetrics() && !isMetricsInKidl) {
+                classLines.addAll(Arrays.asList(
+                        "",
+                        "    @" + model.ref(utilPackage + ".JsonServerMethod") + "(" +
+                        		"rpc = \"" + module.getOriginal().getModuleName() + ".metrics\")",
+                        "    public " + model.ref("java.util.Map") + "<String, Object> metrics() {",
+                        "        return getMetrics().toMap();",
+                        "    }"
+                        ));
+			}
 			String fileType = model.ref("java.io.File");
 			String JsonServerSyslogType = model.ref(utilPackage + ".JsonServerSyslog");
 			classLines.addAll(Arrays.asList(
 					"",
 					"    public static void main(String[] args) throws Exception {",
 					"        if (args.length == 1) {",
-                    "            new " + serverClassName + "().startupServer(Integer.parseInt(args[0]));",
+                    "            new " + serverClassName + "()." + (serverOptions.isVirtualThreads() ?
+                            "startupVirtualThreadServer" : "startupServer") + "(Integer.parseInt(args[0]));",
 					"        } else if (args.length == 3) {",
 					"            " + JsonServerSyslogType + ".setStaticUseSyslog(false);",
 					"            " + JsonServerSyslogType + ".setStaticMlogFile(args[1] + \".log\");",
@@ -1227,112 +1608,103 @@ public class JavaTypeGenerator {
 		}
 	}
 
-	private static void printCommentLines(String intend, List<String> commentLines, List<String> classLines) {
-		if (commentLines.size() > 0) {
-			classLines.add(intend + "/**");
-			for (String commentLine : commentLines) {
-				classLines.add(intend + " * " + commentLine);
+	/* Get the features of the limited servlet that the servers of the modules use. The set is
+	 * empty if the servers extend JsonServerServlet.
+	 */
+	private static Set<ServerFeature> getServerFeatures(JavaData data,
+			JavaServerOptions serverOptions) {
+		Set<ServerFeature> ret = EnumSet.noneOf(ServerFeature.class);
+		for (JavaModule module : data.getModules()) {
+			for (JavaFunc func : module.getFuncs()) {
+				if (getConcurrencyLimit(func) != null)
+					ret.add(ServerFeature.METHOD_LIMITS);
+				if (!getStreamedParams(func).isEmpty())
+					ret.add(ServerFeature.STREAMING);
 			}
-			classLines.add(intend + " */");
 		}
+		if (serverOptions.isMetrics())
+			ret.add(ServerFeature.METRICS);
+		if (serverOptions.isVirtualThreads())
+			ret.add(ServerFeature.VIRTUAL_THREADS);
+		return ret;
 	}
 
-	private static void writeJsonSchema(OutputStream jsonFile, String packageParent, JavaType type, 
-			Set<Integer> tupleTypes) throws Exception {
-		LinkedHashMap<String, Object> tree = new LinkedHashMap<String, Object>();
-		tree.put("$schema", "http://json-schema.org/draft-04/schema#");
-		tree.put("id", type.getModuleName() + "." + type.getJavaClassName());
-		StringBuilder descr = new StringBuilder("<p>Original spec-file type: ").append(type.getOriginalTypeName()).append("</p>\n");
-		List<String> descrLines = new ArrayList<String>();
-		if (type.getAliasHistoryOuterToDeep().size() > 0) {
-			descrLines.addAll(Utils.parseCommentLines(type.getAliasHistoryOuterToDeep().get(0).getComment()));
-			if (descrLines.size() > 0) {
-				descr.append("<pre>\n");
-				for (String l : descrLines) {
-					descr.append(l).append("\n");
-				}
-				descr.append("</pre>");
+	/* Get the limit on concurrent calls set for a function with a
+	 * "@concurrency <max concurrent calls> [<max queued calls>]" line in its comment, as
+	 * {max concurrent, max queued}, or null if there's no limit.
+	 */
+	private static int[] getConcurrencyLimit(JavaFunc func) {
+		int[] ret = null;
+		for (String line : Utils.parseCommentLines(func.getOriginal().getComment())) {
+			String[] parts = line.trim().split("\\s+");
+			if (!parts[0].equals(CONCURRENCY_TAG))
+				continue;
+			String err = "Invalid " + CONCURRENCY_TAG + " line in the comment of function " +
+					func.getOriginal().getName() + ", expected " + CONCURRENCY_TAG +
+					" <max concurrent calls> [<max queued calls>]: " + line.trim();
+			if (ret != null)
+				throw new IllegalStateException("More than one " + CONCURRENCY_TAG +
+						" line in the comment of function " + func.getOriginal().getName());
+			if (parts.length < 2 || parts.length > 3)
+				throw new IllegalStateException(err);
+			try {
+				ret = new int[] {Integer.parseInt(parts[1]),
+						parts.length == 3 ? Integer.parseInt(parts[2]) : 0};
+			} catch (NumberFormatException e) {
+				throw new IllegalStateException(err, e);
 			}
+			if (ret[0] < 1 || ret[1] < 0)
+				throw new IllegalStateException(err);
 		}
-		tree.put("description", descr.toString());
-		tree.put("type", "object");
-		tree.put("javaType", sub(packageParent, type.getModuleName()) + "." + type.getJavaClassName());
-		if (type.getMainType() instanceof KbStruct) {
-			LinkedHashMap<String, Object> props = new LinkedHashMap<String, Object>();
-			for (int itemPos = 0; itemPos < type.getInternalTypes().size(); itemPos++) {
-				JavaType iType = type.getInternalTypes().get(itemPos);
-				String field = type.getInternalFields().get(itemPos);
-				props.put(field, createJsonRefTypeTree(type.getModuleName(), iType, 
-						type.getInternalComment(itemPos), false, packageParent, tupleTypes));
+		return ret;
+	}
+
+	/* Get the names of the parameters of a function that are streamed rather than read into
+	 * memory, set with a "@streaming <parameter> [<parameter> ...]" line in its comment.
+	 */
+	private static Set<String> getStreamedParams(JavaFunc func) {
+		Set<String> ret = new HashSet<String>();
+		String funcName = func.getOriginal().getName();
+		for (String line : Utils.parseCommentLines(func.getOriginal().getComment())) {
+			String[] parts = line.trim().split("\\s+");
+			if (!parts[0].equals(STREAMING_TAG))
+				continue;
+			if (parts.length < 2)
+				throw new IllegalStateException("Invalid " + STREAMING_TAG +
+						" line in the comment of function " + funcName + ", expected " +
+						STREAMING_TAG + " <parameter> [<parameter> ...]: " + line.trim());
+			for (int i = 1; i < parts.length; i++) {
+				JavaFuncParam param = null;
+				for (JavaFuncParam p : func.getParams())
+					if (parts[i].equals(p.getOriginal().getName()))
+						param = p;
+				if (param == null)
+					throw new IllegalStateException("Function " + funcName +
+							" has no parameter " + parts[i] + " to stream");
+				if (param.getType().needClassGeneration() ||
+						!(param.getType().getMainType() instanceof KbList))
+					throw new IllegalStateException("Parameter " + parts[i] + " of function " +
+							funcName + " cannot be streamed as it is not a list");
+				ret.add(parts[i]);
 			}
-			tree.put("properties", props);
-			tree.put("additionalProperties", true);
-		} else {
-			throw new KidlParseException("Type " + type.getMainType().getClass().getSimpleName() + " is not " +
-					"supported for POJO generation");
 		}
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.configure(SerializationFeature.INDENT_OUTPUT, true);
-		mapper.writeValue(jsonFile, tree);
+		return ret;
 	}
 
-	public static String sub(String packageParent, String moduleName) {
-	    return (packageParent.isEmpty() ? "" : (packageParent + ".")) + moduleName;
-	}
-	
-	private static LinkedHashMap<String, Object> createJsonRefTypeTree(String module, JavaType type, String comment, 
-			boolean insideTypeParam, String packageParent, Set<Integer> tupleTypes) {
-		LinkedHashMap<String, Object> typeTree = new LinkedHashMap<String, Object>();
-		if (comment != null && comment.trim().length() > 0)
-			typeTree.put("description", comment);
-		if (type.needClassGeneration()) {
-			if (insideTypeParam) {
-				typeTree.put("type", "object");
-				typeTree.put("javaType", sub(packageParent, type.getModuleName()) + "." + type.getJavaClassName());
-			} else {
-				String modulePrefix = type.getModuleName().equals(module) ? "" : ("../" + type.getModuleName() + "/");
-				typeTree.put("$ref", modulePrefix + type.getJavaClassName() + ".json");
-			}
-		} else if (type.getMainType() instanceof KbScalar) {
-			if (insideTypeParam) {
-				typeTree.put("type", "object");
-				typeTree.put("javaType", ((KbScalar)type.getMainType()).getJavaStyleName());
-			} else {
-				typeTree.put("type", ((KbScalar)type.getMainType()).getJsonStyleName());
+	private static void printCommentLines(String intend, List<String> commentLines, List<String> classLines) {
+		if (commentLines.size() > 0) {
+			classLines.add(intend + "/**");
+			for (String commentLine : commentLines) {
+				classLines.add(intend + " * " + commentLine);
 			}
-		} else if (type.getMainType() instanceof KbList) {
-			LinkedHashMap<String, Object> subType = createJsonRefTypeTree(module, type.getInternalTypes().get(0), null, 
-					true, packageParent, tupleTypes);
-				typeTree.put("type", "object");
-				typeTree.put("javaType", "java.util.List");
-				typeTree.put("javaTypeParams", subType);
-		} else if (type.getMainType() instanceof KbMapping) {
-			typeTree.put("type", "object");
-			typeTree.put("javaType", "java.util.Map");
-			List<LinkedHashMap<String, Object>> subList = new ArrayList<LinkedHashMap<String, Object>>();
-			for (JavaType iType : type.getInternalTypes())
-				subList.add(createJsonRefTypeTree(module, iType, null, true, packageParent, tupleTypes));
-			typeTree.put("javaTypeParams", subList);
-		} else if (type.getMainType() instanceof KbTuple) {
-			typeTree.put("type", "object");
-			int tupleType = type.getInternalTypes().size();
-			if (tupleType < 1)
-				throw new IllegalStateException("Wrong count of tuple parameters: " + tupleType);
-			typeTree.put("javaType", utilPackage + ".Tuple" + tupleType);
-			tupleTypes.add(tupleType);
-			List<LinkedHashMap<String, Object>> subList = new ArrayList<LinkedHashMap<String, Object>>();
-			for (JavaType iType : type.getInternalTypes())
-				subList.add(createJsonRefTypeTree(module, iType, null, true, packageParent, tupleTypes));
-			typeTree.put("javaTypeParams", subList);
-		} else if (type.getMainType() instanceof KbUnspecifiedObject) {
-			typeTree.put("type", "object");
-			typeTree.put("javaType", utilPackage + ".UObject");
-		} else {
-			throw new IllegalStateException("Unknown type: " + type.getMainType().getClass().getName());
+			classLines.add(intend + " */");
 		}
-		return typeTree;
 	}
 
+	public static String sub(String packageParent, String moduleName) {
+	    return (packageParent.isEmpty() ? "" : (packageParent + ".")) + moduleName;
+	}
+	
 	private static JavaType findBasic(KbType type, String moduleName, Set<JavaType> nonPrimitiveTypes, Set<Integer> tupleTypes) {
 		JavaType ret = findBasic(null, type, moduleName, null, new ArrayList<KbTypedef>(), nonPrimitiveTypes, tupleTypes);
 		return ret;
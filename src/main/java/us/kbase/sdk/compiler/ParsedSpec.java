@@ -0,0 +1,145 @@
+package us.kbase.sdk.compiler;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+
+import us.kbase.kidl.KbService;
+import us.kbase.kidl.KidlParseException;
+import us.kbase.kidl.KidlParser;
+import us.kbase.sdk.compiler.report.SpecFile;
+
+/** The result of reading and parsing a spec file and its includes once, shared by all the
+ * generators in a compile.
+ *
+ * The parsed services, the type schemas, and the spec file contents are read only and may be
+ * used from multiple threads.
+ */
+public class ParsedSpec {
+
+	private final File specFile;
+	private final String content;
+	private final CachingIncludeProvider includes;
+	private final List<KbService> services;
+	private final Map<String, Map<String, String>> typeSchemas;
+
+	private ParsedSpec(
+			final File specFile,
+			final String content,
+			final CachingIncludeProvider includes,
+			final List<KbService> services,
+			final Map<String, Map<String, String>> typeSchemas) {
+		this.specFile = specFile;
+		this.content = content;
+		this.includes = includes;
+		this.services = Collections.unmodifiableList(services);
+		final Map<String, Map<String, String>> schemas = new TreeMap<>();
+		for (final Map.Entry<String, Map<String, String>> e: typeSchemas.entrySet()) {
+			schemas.put(e.getKey(), Collections.unmodifiableMap(new TreeMap<>(e.getValue())));
+		}
+		this.typeSchemas = Collections.unmodifiableMap(schemas);
+	}
+
+	/** Read and parse a spec file and any spec files it includes.
+	 * @param specFile the spec file.
+	 * @param withTypeSchemas true to generate JSON schemas for the types in the spec.
+	 * @return the parsed spec.
+	 * @throws IOException if the spec file can't be read.
+	 * @throws KidlParseException if the spec or an included spec can't be parsed.
+	 */
+	public static ParsedSpec parse(final File specFile, final boolean withTypeSchemas)
+			throws IOException, KidlParseException {
+		return parse(specFile, withTypeSchemas, new CachingIncludeProvider.SharedCache());
+	}
+
+	/** Read and parse a spec file and any spec files it includes, sharing the included spec
+	 * files with other compiles.
+	 * @param specFile the spec file.
+	 * @param withTypeSchemas true to generate JSON schemas for the types in the spec.
+	 * @param includeCache the cache of included spec files shared with the other compiles.
+	 * @return the parsed spec.
+	 * @throws IOException if the spec file can't be read.
+	 * @throws KidlParseException if the spec or an included spec can't be parsed.
+	 */
+	public static ParsedSpec parse(
+			final File specFile,
+			final boolean withTypeSchemas,
+			final CachingIncludeProvider.SharedCache includeCache)
+			throws IOException, KidlParseException {
+		requireNonNull(specFile, "specFile");
+		requireNonNull(includeCache, "includeCache");
+		final String content = FileUtils.readFileToString(specFile);
+		final CachingIncludeProvider includes = new CachingIncludeProvider(
+				specFile.getCanonicalFile().getParentFile(), includeCache);
+		final Map<String, Map<String, String>> typeSchemas = new TreeMap<>();
+		final List<KbService> services = KidlParser.parseSpec(KidlParser.parseSpecInt(
+				new StringReader(content), withTypeSchemas ? typeSchemas : null, includes));
+		return new ParsedSpec(specFile, content, includes, services, typeSchemas);
+	}
+
+	/** Get the spec file.
+	 * @return the spec file.
+	 */
+	public File getSpecFile() {
+		return specFile;
+	}
+
+	/** Get the content of the spec file.
+	 * @return the spec file content.
+	 */
+	public String getContent() {
+		return content;
+	}
+
+	/** Get the include provider holding the included spec files. Parsing the spec again with
+	 * this provider, for example to generate HTML, doesn't read or parse the includes again.
+	 * @return the include provider.
+	 */
+	public CachingIncludeProvider getIncludes() {
+		return includes;
+	}
+
+	/** Get the parsed services.
+	 * @return the services.
+	 */
+	public List<KbService> getServices() {
+		return services;
+	}
+
+	/** Get the JSON schemas for the types in the spec, including the types in included specs.
+	 * @return a map of module name to a map of type name to the type's JSON schema. Empty
+	 * unless the spec was parsed with type schemas.
+	 */
+	public Map<String, Map<String, String>> getTypeSchemas() {
+		return typeSchemas;
+	}
+
+	/** Get the main and included spec files for a compilation report.
+	 * @return the spec files, main spec file first.
+	 */
+	public List<SpecFile> getSpecFiles() {
+		final List<SpecFile> specFiles = new ArrayList<SpecFile>();
+		final SpecFile mainSpec = new SpecFile();
+		mainSpec.fileName = specFile.getName();
+		mainSpec.isMain = 1;
+		mainSpec.content = content;
+		specFiles.add(mainSpec);
+		for (final String include: includes.getIncludePaths()) {
+			final SpecFile spec = new SpecFile();
+			spec.fileName = includes.getFileName(include);
+			spec.isMain = 0;
+			spec.content = includes.getContent(include);
+			specFiles.add(spec);
+		}
+		return specFiles;
+	}
+}
@@ -0,0 +1,390 @@
+package us.kbase.sdk.compiler;
+
+import static org.apache.commons.lang3.StringUtils.capitalize;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Generated;
+import javax.lang.model.SourceVersion;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.text.WordUtils;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.sun.codemodel.JAnnotationArrayMember;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JClassAlreadyExistsException;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+
+import us.kbase.kidl.KbList;
+import us.kbase.kidl.KbMapping;
+import us.kbase.kidl.KbScalar;
+import us.kbase.kidl.KbStruct;
+import us.kbase.kidl.KbTuple;
+import us.kbase.kidl.KbUnspecifiedObject;
+import us.kbase.kidl.KidlParseException;
+
+/** Generates Jackson annotated POJOs with builders and toString methods for the structures
+ * in a spec directly into a {@link JCodeModel}.
+ *
+ * The generated source is identical, quirks included, to what jsonschema2pojo generated from
+ * JSON schemas for the structures before this class existed.
+ *
+ * To keep it identical, the code model calls are made in the same order and with the same
+ * kinds of class references as jsonschema2pojo makes them, since both affect the generated
+ * source, e.g. whether a type is imported or written out with its package.
+ */
+public class PojoGenerator {
+
+	private static final char[] WORD_DELIMITERS = {'_', '-'};
+	private static final String GENERATED_BY = "com.googlecode.jsonschema2pojo";
+	private static final String UTIL_PACKAGE = "us.kbase.common.service";
+	private static final String ADDITIONAL_PROPERTIES = "additionalProperties";
+
+	private final JCodeModel codeModel;
+	private final String packageParent;
+	private final Set<Integer> tupleTypes;
+	private final boolean lazyAdditionalProperties;
+	private final Map<String, JavaType> types = new HashMap<>();
+	private final Map<String, JDefinedClass> classes = new HashMap<>();
+
+	private PojoGenerator(
+			final JCodeModel codeModel,
+			final String packageParent,
+			final Set<Integer> tupleTypes,
+			final boolean lazyAdditionalProperties) {
+		this.codeModel = codeModel;
+		this.packageParent = packageParent;
+		this.tupleTypes = tupleTypes;
+		this.lazyAdditionalProperties = lazyAdditionalProperties;
+	}
+
+	/** Generate POJOs into a code model.
+	 * @param types the types requiring class generation.
+	 * @param packageParent the parent package of the module packages. An empty string
+	 * indicates the module packages are top level packages.
+	 * @param codeModel the code model in which to generate the classes.
+	 * @param tupleTypes the set to which the arity of any tuples referenced by the classes
+	 * will be added.
+	 * @throws KidlParseException if a type is not a structure.
+	 */
+	public static void generate(
+			final List<JavaType> types,
+			final String packageParent,
+			final JCodeModel codeModel,
+			final Set<Integer> tupleTypes)
+			throws KidlParseException {
+		generate(types, packageParent, codeModel, tupleTypes, false);
+	}
+
+	/** Generate POJOs into a code model.
+	 * @param types the types requiring class generation.
+	 * @param packageParent the parent package of the module packages. An empty string
+	 * indicates the module packages are top level packages.
+	 * @param codeModel the code model in which to generate the classes.
+	 * @param tupleTypes the set to which the arity of any tuples referenced by the classes
+	 * will be added.
+	 * @param lazyAdditionalProperties true to allocate the map for additional properties in
+	 * each POJO instance on first use rather than when the instance is created. JSON
+	 * serialization and deserialization are unaffected.
+	 * @throws KidlParseException if a type is not a structure.
+	 */
+	public static void generate(
+			final List<JavaType> types,
+			final String packageParent,
+			final JCodeModel codeModel,
+			final Set<Integer> tupleTypes,
+			final boolean lazyAdditionalProperties)
+			throws KidlParseException {
+		final PojoGenerator gen = new PojoGenerator(
+				codeModel, packageParent, tupleTypes, lazyAdditionalProperties);
+		for (final JavaType type: types) {
+			gen.types.putIfAbsent(gen.getClassName(type), type);
+		}
+		for (final JavaType type: types) {
+			gen.generate(type);
+		}
+	}
+
+	private String getClassName(final JavaType type) {
+		return JavaTypeGenerator.sub(packageParent, type.getModuleName()) + "." +
+				type.getJavaClassName();
+	}
+
+	private JDefinedClass getClass(final JavaType type) {
+		final String name = getClassName(type);
+		JDefinedClass c = classes.get(name);
+		if (c == null) {
+			try {
+				c = codeModel._class(name);
+			} catch (JClassAlreadyExistsException e) {
+				c = e.getExistingClass();
+			}
+			classes.put(name, c);
+		}
+		return c;
+	}
+
+	private void generate(final JavaType type) throws KidlParseException {
+		if (!(type.getMainType() instanceof KbStruct)) {
+			throw new KidlParseException("Type " + type.getMainType().getClass().getSimpleName() +
+					" is not supported for POJO generation");
+		}
+		final JDefinedClass c = getClass(type);
+		if (c.getMethod("toString", new JType[0]) != null) {
+			return;  // already generated, e.g. the same type under another alias
+		}
+		c.annotate(JsonInclude.class).param("value", JsonInclude.Include.NON_NULL);
+		c.annotate(Generated.class).param("value", GENERATED_BY);
+		c.javadoc().append(getDescription(type));
+		final List<String> fields = type.getInternalFields();
+		for (int itemPos = 0; itemPos < type.getInternalTypes().size(); itemPos++) {
+			final JavaType iType = type.getInternalTypes().get(itemPos);
+			if (iType.needClassGeneration()) {
+				// jsonschema2pojo documents fields referencing other schemas with the
+				// referenced schema's description rather than the field comment
+				final JavaType ref = types.get(getClassName(iType));
+				addProperty(c, fields.get(itemPos), getClass(iType),
+						getDescription(ref == null ? iType : ref));
+			} else {
+				final String comment = type.getInternalComment(itemPos);
+				addProperty(c, fields.get(itemPos), getFieldType(iType),
+						comment != null && comment.trim().length() > 0 ? comment : null);
+			}
+		}
+		final JAnnotationArrayMember order = c.annotate(JsonPropertyOrder.class)
+				.paramArray("value");
+		for (final String field: fields.subList(0, type.getInternalTypes().size())) {
+			order.param(field);
+		}
+		addAdditionalProperties(c);
+		addToString(c, lazyAdditionalProperties);
+	}
+
+	private static String getDescription(final JavaType type) {
+		final StringBuilder descr = new StringBuilder("<p>Original spec-file type: ")
+				.append(type.getOriginalTypeName()).append("</p>\n");
+		if (type.getAliasHistoryOuterToDeep().size() > 0) {
+			final List<String> descrLines = Utils.parseCommentLines(
+					type.getAliasHistoryOuterToDeep().get(0).getComment());
+			if (descrLines.size() > 0) {
+				descr.append("<pre>\n");
+				for (final String l: descrLines) {
+					descr.append(l).append("\n");
+				}
+				descr.append("</pre>");
+			}
+		}
+		return descr.toString();
+	}
+
+	/* Types other than generated classes are referenced by name with JCodeModel.ref(String),
+	 * as jsonschema2pojo does for the javaType schema property, except for scalar field types,
+	 * which jsonschema2pojo maps from the JSON type to a class. Scalar type parameters are
+	 * referenced by their short names, which is why a class with a List<String> field
+	 * declares its String fields as java.lang.String.
+	 */
+	private JClass getFieldType(final JavaType type) {
+		if (type.getMainType() instanceof KbScalar) {
+			return codeModel.ref(((KbScalar) type.getMainType()).getFullJavaStyleName());
+		}
+		return getParamType(type);
+	}
+
+	private JClass getParamType(final JavaType type) {
+		if (type.needClassGeneration()) {
+			return codeModel.ref(getClassName(type));
+		} else if (type.getMainType() instanceof KbScalar) {
+			return codeModel.ref(((KbScalar) type.getMainType()).getJavaStyleName());
+		} else if (type.getMainType() instanceof KbList) {
+			return codeModel.ref("java.util.List").narrow(getParamTypes(type));
+		} else if (type.getMainType() instanceof KbMapping) {
+			return codeModel.ref("java.util.Map").narrow(getParamTypes(type));
+		} else if (type.getMainType() instanceof KbTuple) {
+			final int tupleType = type.getInternalTypes().size();
+			if (tupleType < 1)
+				throw new IllegalStateException("Wrong count of tuple parameters: " + tupleType);
+			tupleTypes.add(tupleType);
+			return codeModel.ref(UTIL_PACKAGE + ".Tuple" + tupleType)
+					.narrow(getParamTypes(type));
+		} else if (type.getMainType() instanceof KbUnspecifiedObject) {
+			return codeModel.ref(UTIL_PACKAGE + ".UObject");
+		} else {
+			throw new IllegalStateException(
+					"Unknown type: " + type.getMainType().getClass().getName());
+		}
+	}
+
+	private List<JClass> getParamTypes(final JavaType type) {
+		final List<JClass> ret = new ArrayList<>();
+		for (final JavaType iType: type.getInternalTypes()) {
+			ret.add(getParamType(iType));
+		}
+		return ret;
+	}
+
+	private void addProperty(
+			final JDefinedClass c,
+			final String jsonName,
+			final JType type,
+			final String description) {
+		final JFieldVar field = c.field(JMod.PRIVATE, type, getPropertyName(jsonName));
+		if (description != null) {
+			field.javadoc().append(description);
+		}
+		field.annotate(JsonProperty.class).param("value", jsonName);
+
+		final JMethod getter = c.method(JMod.PUBLIC, field.type(),
+				getAccessorName("get", jsonName));
+		getter.body()._return(field);
+		getter.annotate(JsonProperty.class).param("value", jsonName);
+		if (description != null) {
+			getter.javadoc().append(description);
+		}
+
+		final JMethod setter = c.method(JMod.PUBLIC, void.class,
+				getAccessorName("set", jsonName));
+		final JVar setterParam = setter.param(field.type(), field.name());
+		setter.body().assign(JExpr._this().ref(field), setterParam);
+		setter.annotate(JsonProperty.class).param("value", jsonName);
+		if (description != null) {
+			setter.javadoc().append(description);
+		}
+
+		final JMethod builder = c.method(JMod.PUBLIC, c, getAccessorName("with", field.name()));
+		final JVar builderParam = builder.param(field.type(), field.name());
+		final JBlock body = builder.body();
+		body.assign(JExpr._this().ref(field), builderParam);
+		body._return(JExpr._this());
+	}
+
+	private void addAdditionalProperties(final JDefinedClass c) {
+		final JClass object = codeModel.ref(Object.class);
+		final JClass mapType = codeModel.ref(Map.class).narrow(
+				codeModel.ref(String.class), object);
+		final JClass mapImplType = codeModel.ref(HashMap.class).narrow(
+				codeModel.ref(String.class), object);
+		final JFieldVar field = c.field(JMod.PRIVATE, mapType, ADDITIONAL_PROPERTIES);
+		if (!lazyAdditionalProperties) {
+			field.init(JExpr._new(mapImplType));
+		}
+
+		final JMethod getter = c.method(JMod.PUBLIC, field.type(), "getAdditionalProperties");
+		if (lazyAdditionalProperties) {
+			getter.annotate(JsonIgnore.class);
+			getter.body()._if(JExpr._this().ref(field).eq(JExpr._null()))._then()
+					.assign(JExpr._this().ref(field), JExpr._new(mapImplType));
+			// serializing a POJO mustn't allocate the map, so Jackson gets its own getter
+			final JMethod anyGetter = c.method(
+					JMod.PRIVATE, field.type(), "getAdditionalPropertiesOrEmpty");
+			anyGetter.annotate(JsonAnyGetter.class);
+			anyGetter.body()._if(JExpr._this().ref(field).eq(JExpr._null()))._then()
+					._return(codeModel.ref(Collections.class).staticInvoke("emptyMap"));
+			anyGetter.body()._return(JExpr._this().ref(field));
+		} else {
+			getter.annotate(JsonAnyGetter.class);
+		}
+		getter.body()._return(JExpr._this().ref(field));
+
+		final JMethod setter = c.method(JMod.PUBLIC, void.class, "setAdditionalProperties");
+		setter.annotate(JsonAnySetter.class);
+		final JVar name = setter.param(String.class, "name");
+		final JVar value = setter.param(object, "value");
+		if (lazyAdditionalProperties) {
+			setter.body().invoke(JExpr.invoke(getter), "put").arg(name).arg(value);
+		} else {
+			setter.body().invoke(JExpr._this().ref(field), "put").arg(name).arg(value);
+		}
+	}
+
+	/** Add a toString method that prints the class name and the value of each field, as for
+	 * the POJOs generated by this class.
+	 * @param jclass the class to which the method will be added.
+	 */
+	public static void addToString(final JDefinedClass jclass) {
+		addToString(jclass, false);
+	}
+
+	/* If the additional properties are lazily allocated, print an unallocated map as empty so
+	 * the output is the same as for a POJO with an eagerly allocated map.
+	 */
+	private static void addToString(
+			final JDefinedClass jclass,
+			final boolean lazyAdditionalProperties) {
+		if (jclass.getMethod("toString", new JType[0]) != null)
+			return;
+		final JMethod toString = jclass.method(JMod.PUBLIC, String.class, "toString");
+		final JBlock body = toString.body();
+		JExpression ret = JExpr.lit(jclass.name());
+		boolean firstField = true;
+		for (final Map.Entry<String, JFieldVar> entry: jclass.fields().entrySet()) {
+			ret = JOp.plus(ret, JExpr.lit((firstField ? " [" : ", ") + entry.getKey() + "="));
+			final JFieldVar field = entry.getValue();
+			if (lazyAdditionalProperties && entry.getKey().equals(ADDITIONAL_PROPERTIES)) {
+				ret = JOp.plus(ret, JOp.cond(
+						field.eq(JExpr._null()), JExpr.lit("{}"), field));
+			} else {
+				ret = JOp.plus(ret, field);
+			}
+			firstField = false;
+		}
+		ret = JOp.plus(ret, JExpr.lit("]"));
+		body._return(ret);
+		toString.annotate(Override.class);
+	}
+
+	/* The following methods reproduce the jsonschema2pojo 0.3.6 naming rules for property
+	 * names that are valid KIDL identifiers.
+	 */
+
+	private static String getPropertyName(final String jsonName) {
+		String name = capitalizeTrailingWords(jsonName);
+		if (Character.isDigit(name.charAt(0))) {
+			name = "_" + name;
+		}
+		if (SourceVersion.isKeyword(name)) {
+			name = "_" + name;
+		}
+		if (SourceVersion.isKeyword(name)) {
+			name += "_";
+		}
+		return name;
+	}
+
+	private static String getAccessorName(final String prefix, final String name) {
+		final String ret = prefix + capitalize(capitalizeTrailingWords(name));
+		// don't override Object.getClass()
+		return ret.equals("getClass") || ret.equals("setClass") ? ret + "_" : ret;
+	}
+
+	private static String capitalizeTrailingWords(String name) {
+		if (StringUtils.containsAny(name, WORD_DELIMITERS)) {
+			final String capitalized = WordUtils.capitalize(name, WORD_DELIMITERS);
+			name = name.charAt(0) + capitalized.substring(1);
+			for (final char c: WORD_DELIMITERS) {
+				name = StringUtils.remove(name, c);
+			}
+		}
+		return name;
+	}
+}
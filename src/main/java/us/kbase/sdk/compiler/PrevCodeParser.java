@@ -2,18 +2,16 @@ package us.kbase.sdk.compiler;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
-import java.text.MessageFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.apache.commons.io.FileUtils;
+import java.util.Map;
+import java.util.Set;
 
+import us.kbase.sdk.util.BackupManager;
 import us.kbase.sdk.util.TextUtils;
 
 public class PrevCodeParser {
@@ -23,17 +21,37 @@ public class PrevCodeParser {
     public static final String STATUS = "STATUS";
     public static final String METHOD = "METHOD_";
     
+    private static final DateTimeFormatter BACKUP_SUFFIX =
+            DateTimeFormatter.ofPattern("'.bak-'yyyy-MM-dd-HH-mm-ss");
+    
+    private static final String[][] FIXED_BLOCKS = {
+            {HEADER, "HEADER"},
+            {CLSHEADER, "CLASS_HEADER"},
+            {CONSTRUCTOR, "CONSTRUCTOR"},
+            {STATUS, "STATUS"}
+    };
+    
     public static HashMap<String, String> parsePrevCode(File implFile, String commentPrefix,
             List<String> funcs, boolean withClassHeader) throws IOException, ParseException {
-        commentPrefix = Pattern.quote(commentPrefix);
-        Pattern PAT_HEADER = Pattern.compile(".*" + commentPrefix + 
-                "BEGIN_HEADER\n(.*\n)?[ \t]*" + commentPrefix + "END_HEADER\n.*", Pattern.DOTALL);
-        Pattern PAT_CLASS_HEADER = Pattern.compile(".*" + commentPrefix + 
-                "BEGIN_CLASS_HEADER\n(.*\n)?[ \t]*" + commentPrefix + "END_CLASS_HEADER\n.*", Pattern.DOTALL);
-        Pattern PAT_CONSTRUCTOR = Pattern.compile(".*" + commentPrefix + "BEGIN_CONSTRUCTOR\n(.*\n)?[ \t]*" + 
-                commentPrefix + "END_CONSTRUCTOR\n.*", Pattern.DOTALL);
-        Pattern PAT_STATUS = Pattern.compile(".*" + commentPrefix + "BEGIN_STATUS\n(.*\n)?[ \t]*" + 
-                commentPrefix + "END_STATUS\n.*", Pattern.DOTALL);
+        return parsePrevCode(implFile, commentPrefix, funcs, withClassHeader,
+                BackupManager.fromEnvironment());
+    }
+
+    /** Parse the user code blocks from an existing implementation file, backing up the file
+     * first.
+     * @param implFile the implementation file. If null or the file doesn't exist, empty
+     * header, class header, and constructor blocks are returned.
+     * @param commentPrefix the prefix for comments in the file's language, e.g. #.
+     * @param funcs the names of the methods to find.
+     * @param withClassHeader true if the file is required to contain a class header block.
+     * @param backups the backup policy for the implementation file.
+     * @return the code blocks, keyed as described in {@link #findRegions}.
+     * @throws IOException if the file couldn't be read or backed up.
+     * @throws ParseException if a required block is missing.
+     */
+    public static HashMap<String, String> parsePrevCode(File implFile, String commentPrefix,
+            List<String> funcs, boolean withClassHeader, BackupManager backups)
+            throws IOException, ParseException {
         HashMap<String, String> code = new HashMap<String, String>();
         if (implFile == null || !implFile.exists()) {
             code.put(HEADER, "");
@@ -42,60 +60,142 @@ public class PrevCodeParser {
             code.put(CONSTRUCTOR, "");
             return code;
         }
-        String backupExtension = ".bak-" + new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss").format(new Date());
-        File backup = new File(implFile.getAbsoluteFile() + backupExtension);
-        FileUtils.copyFile(implFile, backup);
-        List<String> fileLines = TextUtils.readFileLines(implFile);
-        // Getting rid of windows end-of-line chars (\r\n -> \n)
-        StringWriter sw = new StringWriter();
-        TextUtils.writeFileLines(fileLines, sw);
-        sw.close();
-        String oldserver = sw.toString();
-        checkMatch(code, PAT_HEADER, oldserver, HEADER, "header", true, implFile);
+        backups.backup(implFile.getAbsoluteFile().toPath(), BACKUP_SUFFIX);
+        Map<String, Region> regions = findRegions(TextUtils.readFileLines(implFile),
+                commentPrefix, funcs);
+        checkRegion(code, regions, HEADER, "header", true, implFile);
         if (withClassHeader)
-            checkMatch(code, PAT_CLASS_HEADER, oldserver, CLSHEADER, "class header", true, implFile);
-        checkMatch(code, PAT_CONSTRUCTOR, oldserver, CONSTRUCTOR, "constructor", true, implFile);
-        checkMatch(code, PAT_STATUS, oldserver, STATUS, "method status", false, implFile);
-        for (String funcName : funcs) {
-            Pattern p = Pattern.compile(MessageFormat.format(".*" + commentPrefix + "BEGIN {0}\n(.*\n)?[ \t]*" + 
-                    commentPrefix + "END {0}\n.*", funcName), Pattern.DOTALL);
-            checkMatch(code, p, oldserver, METHOD + funcName, "method " + funcName, false, implFile);
-        }
+            checkRegion(code, regions, CLSHEADER, "class header", true, implFile);
+        checkRegion(code, regions, CONSTRUCTOR, "constructor", true, implFile);
+        checkRegion(code, regions, STATUS, "method status", false, implFile);
+        for (String funcName : funcs)
+            checkRegion(code, regions, METHOD + funcName, "method " + funcName, false, implFile);
         return code;
     }
 
-    private static void checkMatch(HashMap<String, String> code, Pattern matcher,
-            String oldserver, String codekey, String errortype, boolean exceptOnFail,
-            File file) 
+    private static void checkRegion(HashMap<String, String> code, Map<String, Region> regions,
+            String codekey, String errortype, boolean exceptOnFail, File file)
             throws ParseException {
-        Matcher m = matcher.matcher(oldserver);
-        if (!m.matches()) {
-            if (exceptOnFail) {
+        Region r = regions.get(codekey);
+        if (r == null) {
+            if (exceptOnFail)
                 throw new ParseException("Missing " + errortype + 
                         " in original file [" + file + "]", 0);
-            } else {
-                return;
+            return;
+        }
+        code.put(codekey, r.getCode());
+    }
+
+    /** A block of user code between a BEGIN and an END marker comment in an implementation
+     * file.
+     */
+    public static class Region {
+        private final int beginLine;
+        private final int endLine;
+        private final String code;
+
+        private Region(int beginLine, int endLine, String code) {
+            this.beginLine = beginLine;
+            this.endLine = endLine;
+            this.code = code;
+        }
+
+        /** Get the line number of the BEGIN marker.
+         * @return the 1-based line number.
+         */
+        public int getBeginLine() {
+            return beginLine;
+        }
+
+        /** Get the line number of the END marker.
+         * @return the 1-based line number.
+         */
+        public int getEndLine() {
+            return endLine;
+        }
+
+        /** Get the code between the markers. Each line, including the last, is terminated
+         * by "\n".
+         * @return the code, or an empty string if there are no lines between the markers.
+         */
+        public String getCode() {
+            return code;
+        }
+    }
+
+    /** Find the header, class header, constructor, status, and method code blocks in the
+     * lines of an implementation file in a single pass.
+     * 
+     * A BEGIN marker is a line ending with the comment prefix followed by, for example,
+     * BEGIN_HEADER or "BEGIN method_name". An END marker is a line consisting of optional
+     * spaces and tabs followed by the comment prefix and, for example, END_HEADER or
+     * "END method_name". If a block has more than one set of markers, the last END marker
+     * and the last BEGIN marker before it are used.
+     * @param lines the lines of the file without line terminators.
+     * @param commentPrefix the prefix for comments in the file's language, e.g. #.
+     * @param funcs the names of the methods to find.
+     * @return the blocks that were found, keyed by {@link #HEADER}, {@link #CLSHEADER},
+     * {@link #CONSTRUCTOR}, {@link #STATUS}, or {@link #METHOD} plus the method name.
+     */
+    public static Map<String, Region> findRegions(List<String> lines, String commentPrefix,
+            Collection<String> funcs) {
+        Set<String> funcSet = new HashSet<String>(funcs);
+        String methodBegin = commentPrefix + "BEGIN ";
+        String methodEnd = commentPrefix + "END ";
+        // the last BEGIN line seen for each block, and the BEGIN and END lines of the last
+        // END seen for each block
+        Map<String, Integer> lastBegin = new HashMap<String, Integer>();
+        Map<String, int[]> lastBlock = new HashMap<String, int[]>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String begin = null;
+            for (String[] block : FIXED_BLOCKS) {
+                if (line.endsWith(commentPrefix + "BEGIN_" + block[1])) {
+                    begin = block[0];
+                    break;
+                }
             }
+            if (begin == null) {
+                int pos = line.lastIndexOf(methodBegin);
+                if (pos >= 0 && funcSet.contains(line.substring(pos + methodBegin.length())))
+                    begin = METHOD + line.substring(pos + methodBegin.length());
+            }
+            if (begin != null) {
+                lastBegin.put(begin, i);
+                continue;
+            }
+            String end = null;
+            String trimmed = stripLeadingBlanks(line);
+            if (trimmed.startsWith(commentPrefix + "END_")) {
+                for (String[] block : FIXED_BLOCKS) {
+                    if (trimmed.equals(commentPrefix + "END_" + block[1])) {
+                        end = block[0];
+                        break;
+                    }
+                }
+            } else if (trimmed.startsWith(methodEnd) &&
+                    funcSet.contains(trimmed.substring(methodEnd.length()))) {
+                end = METHOD + trimmed.substring(methodEnd.length());
+            }
+            if (end != null && lastBegin.containsKey(end))
+                lastBlock.put(end, new int[] {lastBegin.get(end), i});
+        }
+        Map<String, Region> regions = new HashMap<String, Region>();
+        for (Map.Entry<String, int[]> e : lastBlock.entrySet()) {
+            int b = e.getValue()[0];
+            int en = e.getValue()[1];
+            StringBuilder sb = new StringBuilder();
+            for (int i = b + 1; i < en; i++)
+                sb.append(lines.get(i)).append('\n');
+            regions.put(e.getKey(), new Region(b + 1, en + 1, sb.toString()));
         }
-        String value = m.group(1);
-        if (value == null)
-            value = "";
-        code.put(codekey, value);
+        return regions;
     }
-    
-    public static void main(String[] args) throws Exception {
-        String oldserver = "=cut\n" +
-                "\n" +
-                "#BEGIN_HEADER\n" +
-                "vf\n" + 
-                "   #END_HEADER\n" +
-                "\n" +
-                "sub new\n" +
-                "{\n";
-        String commentPrefix = Pattern.quote("#");
-        Pattern PAT_HEADER = Pattern.compile(".*" + commentPrefix + 
-                "BEGIN_HEADER\n(.*\n)?[ \t]*" + commentPrefix + "END_HEADER\n.*", Pattern.DOTALL);
-        HashMap<String, String> code = new HashMap<String, String>();
-        checkMatch(code, PAT_HEADER, oldserver, HEADER, "header", true, new File("./temp.txt"));
+
+    private static String stripLeadingBlanks(String line) {
+        int i = 0;
+        while (i < line.length() && (line.charAt(i) == ' ' || line.charAt(i) == '\t'))
+            i++;
+        return line.substring(i);
     }
 }
@@ -1,36 +1,40 @@
 package us.kbase.sdk.compiler;
 
-import java.io.DataInputStream;
+import static java.util.Objects.requireNonNull;
+
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.PrintStream;
+import java.io.StringReader;
 import java.io.Writer;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-
-import org.apache.commons.io.FileUtils;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 
-import us.kbase.jkidl.FileIncludeProvider;
-import us.kbase.jkidl.IncludeProvider;
-import us.kbase.jkidl.ParseException;
-import us.kbase.jkidl.SpecParser;
-import us.kbase.kidl.KbModule;
 import us.kbase.kidl.KbService;
-import us.kbase.kidl.KidlParseException;
-import us.kbase.kidl.KidlParser;
 import us.kbase.sdk.compiler.html.HTMLGenerator;
 import us.kbase.sdk.compiler.report.CompilationReporter;
-import us.kbase.sdk.compiler.report.SpecFile;
 import us.kbase.sdk.util.DiskFileSaver;
 import us.kbase.sdk.util.FileSaver;
+import us.kbase.sdk.util.InMemoryFileSaver;
+import us.kbase.sdk.util.WriteIfChangedFileSaver;
 
 public class RunCompileCommand {
 
+    // generated file counts for all compiles in this process, see printStats()
+    private static final LongAdder FILES_CREATED = new LongAdder();
+    private static final LongAdder FILES_UPDATED = new LongAdder();
+    private static final LongAdder FILES_UNCHANGED = new LongAdder();
+
     public static void generate(
             // this is repulsive and needs a builder
             final File specFile,
@@ -53,104 +57,243 @@ public class RunCompileCommand {
             final String gitUrl,
             final String gitCommitHash
             ) throws Exception {
+        generate(specFile, url, pyClientSide, pyClientName, pyServerSide, pyServerName,
+                pyImplName, javaClientSide, javaServerSide, javaPackageParent, javaSrcPath,
+                outDir, jsonSchemaPath, clientAsyncVer, dynservVer, html, semanticVersion,
+                gitUrl, gitCommitHash, CompileOptions.defaults());
+    }
+
+    /** Compile a spec file.
+     * @param options options for the compile.
+     */
+    public static void generate(
+            final File specFile,
+            final URL url,
+            final boolean pyClientSide, 
+            final String pyClientName,
+            boolean pyServerSide,
+            final String pyServerName, 
+            final String pyImplName,
+            final boolean javaClientSide,
+            final boolean javaServerSide, 
+            final String javaPackageParent,
+            final String javaSrcPath,
+            final File outDir,
+            final String jsonSchemaPath, 
+            final String clientAsyncVer,
+            final String dynservVer,
+            final boolean html,
+            final String semanticVersion,
+            final String gitUrl,
+            final String gitCommitHash,
+            final CompileOptions options
+            ) throws Exception {
+        requireNonNull(options, "options");
+        final boolean incremental = options.isIncremental();
+        final File archive = options.getArchive();
+        final String reportFile = getReportFile();
+        final boolean withReport = reportFile != null;
+        if (archive != null && (incremental || withReport))
+            throw new IllegalArgumentException(
+                    "An archive output cannot be combined with an incremental compile or " +
+                    "a compile report");
+        // the report needs the parsed spec, so a compile with a report is never skipped
+        final boolean skippable = incremental && !withReport;
+        final List<String> fingerprintOptions = Arrays.asList(
+                "url=" + url, "pyClientSide=" + pyClientSide, "pyClientName=" + pyClientName,
+                "pyServerSide=" + pyServerSide, "pyServerName=" + pyServerName,
+                "pyImplName=" + pyImplName, "javaClientSide=" + javaClientSide,
+                "javaServerSide=" + javaServerSide, "javaPackageParent=" + javaPackageParent,
+                "javaSrcPath=" + javaSrcPath, "outDir=" + outDir.getAbsolutePath(),
+                "jsonSchemaPath=" + jsonSchemaPath, "clientAsyncVer=" + clientAsyncVer,
+                "dynservVer=" + dynservVer, "html=" + html,
+                "semanticVersion=" + semanticVersion, "gitUrl=" + gitUrl,
+                "gitCommitHash=" + gitCommitHash,
+                "javaLazyAdditionalProperties=" + options.isJavaLazyAdditionalProperties(),
+                "javaClientOptions=" + options.getJavaClientOptions(),
+                "javaServerOptions=" + options.getJavaServerOptions());
+        if (skippable) {
+            final CompileManifest prev = CompileManifest.read(outDir);
+            if (prev != null && prev.isUpToDate(
+                    CompileManifest.fingerprint(fingerprintOptions, specFile, prev.includes))) {
+                System.out.println("Spec files and compile options are unchanged since " +
+                        "the last compilation, skipping code generation");
+                return;
+            }
+        }
+        final List<WriteIfChangedFileSaver> savers = new ArrayList<WriteIfChangedFileSaver>();
+        final InMemoryFileSaver memory = archive == null ? null : new InMemoryFileSaver();
         // TODO CODE this looks similar to code in the client installer, might be duplicated
         FileSaver javaSrcDir = null;
         // TODO CODE make javasrc path required if java processing is requested. Make a builder
         //           Later spots in the code expect a non-null value for javaSrcDir
         if (javaSrcPath != null)
-            javaSrcDir = new DiskFileSaver(correctRelativePath(javaSrcPath, outDir));
-        final File dir = specFile.getCanonicalFile().getParentFile();
-        final List<SpecFile> specFiles = new ArrayList<SpecFile>();
-        SpecFile mainSpec = new SpecFile();
-        mainSpec.fileName = specFile.getName();
-        mainSpec.isMain = 1;
-        mainSpec.content = FileUtils.readFileToString(specFile);
-        specFiles.add(mainSpec);
-        IncludeProvider ip = new IncludeProvider() {
-            @Override
-            public Map<String, KbModule> parseInclude(String includeLine) throws KidlParseException {
-                String specPath = includeLine.trim();
-                if (specPath.startsWith("#include"))
-                    specPath = specPath.substring(8).trim();
-                if (specPath.startsWith("<"))
-                    specPath = specPath.substring(1).trim();
-                if (specPath.endsWith(">"))
-                    specPath = specPath.substring(0, specPath.length() - 1).trim();
-                File specFile = new File(specPath);
-                if (!specFile.isAbsolute())
-                    specFile = new File(dir, specPath);
-                if (!specFile.exists())
-                    throw new KidlParseException("Can not find included spec-file: " + specFile.getAbsolutePath());
-                try {
-                    SpecFile spec = new SpecFile();
-                    spec.fileName = specFile.getName();
-                    spec.isMain = 0;
-                    spec.content = FileUtils.readFileToString(specFile);
-                    specFiles.add(spec);
-                    SpecParser p = new SpecParser(new DataInputStream(new FileInputStream(specFile)));
-                    return p.SpecStatement(this);
-                } catch (IOException e) {
-                    throw new IllegalStateException("Unexpected error", e);
-                } catch (ParseException e) {
-                    throw new KidlParseException("Error parsing spec-file [" + specFile.getAbsolutePath() + "]: " + e.getMessage());
-                }
-            }
-        };
-        FileSaver output = new DiskFileSaver(outDir);
+            javaSrcDir = createFileSaver(
+                    correctRelativePath(javaSrcPath, outDir), outDir, savers, memory);
+        // parse once, then run the generators as independent stages over the parsed spec
+        final ParsedSpec spec = ParsedSpec.parse(specFile, jsonSchemaPath != null,
+                options.getIncludeCache() == null ? new CachingIncludeProvider.SharedCache() :
+                        options.getIncludeCache());
+        final FileSaver output = createFileSaver(outDir, outDir, savers, memory);
+        final FileSaver jsonSchemas = jsonSchemaPath == null ? null : createFileSaver(
+                correctRelativePath(jsonSchemaPath, outDir), outDir, savers, memory);
+        final List<Callable<Void>> stages = new ArrayList<Callable<Void>>();
         if (html) {
-            try (final FileReader r = new FileReader(specFile)) {
-                new HTMLGenerator().generate(r, new FileIncludeProvider(dir),
-                        output);
-            }
-        }
-        FileSaver jsonSchemas = null;
-        if (jsonSchemaPath != null) {
-            jsonSchemas = new DiskFileSaver(correctRelativePath(jsonSchemaPath, outDir));
+            stages.add(() -> {
+                new HTMLGenerator().generate(
+                        new StringReader(spec.getContent()), spec.getIncludes(), output);
+                return null;
+            });
         }
-        Reader specReader = new FileReader(specFile);
-        Map<String, Map<String, String>> modelToTypeJsonSchemaReturn = null;
-        if (jsonSchemas != null)
-            modelToTypeJsonSchemaReturn = new TreeMap<String, Map<String, String>>();
-        List<KbService> services = KidlParser.parseSpec(KidlParser.parseSpecInt(specReader, 
-                modelToTypeJsonSchemaReturn, ip));
         if (jsonSchemas != null) {
-            for (String module : modelToTypeJsonSchemaReturn.keySet()) {
-                Map<String, String> typeToSchema = modelToTypeJsonSchemaReturn.get(module);
-                for (String type : typeToSchema.keySet()) {
-                    Writer w = jsonSchemas.openWriter(module + "/" + type + ".json");
-                    w.write(typeToSchema.get(type));
-                    w.close();
-                }
-            }
+            stages.add(() -> {
+                writeTypeSchemas(spec.getTypeSchemas(), jsonSchemas);
+                return null;
+            });
         }
-        JavaData javaParsingData = null;
+        final List<KbService> services = spec.getServices();
+        final JavaData[] javaParsingData = new JavaData[1];
         // TODO TEST the missing javaServerSide bool was not caught in tests
         if (javaClientSide || javaServerSide) {
-            //TODO DYNSERV add dynamic service client generation to all clients except Python
-            javaParsingData = JavaTypeGenerator.processSpec(services, javaSrcDir, 
-                    javaPackageParent, javaServerSide, url,
-                    clientAsyncVer, dynservVer, semanticVersion, gitUrl, gitCommitHash);
+            final FileSaver javaOut = javaSrcDir;
+            stages.add(() -> {
+                //TODO DYNSERV add dynamic service client generation to all clients except Python
+                javaParsingData[0] = JavaTypeGenerator.processSpec(services, javaOut, 
+                        javaPackageParent, javaServerSide, url,
+                        clientAsyncVer, dynservVer, semanticVersion, gitUrl, gitCommitHash,
+                        null, null, options);
+                return null;
+            });
         }
-        TemplateBasedGenerator.generate(services, url == null ? null : url.toString(),
-                pyClientSide, pyClientName, 
-                pyServerSide, pyServerName, pyImplName, ip, output, clientAsyncVer,
-                dynservVer, semanticVersion, gitUrl, gitCommitHash);
-        String reportFile = System.getenv("KB_SDK_COMPILE_REPORT_FILE");
-        if (reportFile == null || reportFile.isEmpty())
-            reportFile = System.getProperty("KB_SDK_COMPILE_REPORT_FILE");
-        if (reportFile != null && !reportFile.isEmpty()) {
+        final boolean pySrv = pyServerSide;
+        stages.add(() -> {
+            TemplateBasedGenerator.generate(services, url == null ? null : url.toString(),
+                    pyClientSide, pyClientName, 
+                    pySrv, pyServerName, pyImplName, spec.getIncludes(), output,
+                    clientAsyncVer, dynservVer, semanticVersion, gitUrl, gitCommitHash);
+            return null;
+        });
+        runStages(stages, options.getThreads());
+        if (withReport) {
             pyServerSide = TemplateBasedGenerator.genPythonServer(pyServerSide, 
                     pyServerName, pyImplName);
             try {
                 CompilationReporter.prepareCompileReport(outDir, services, 
                         pyServerSide, pyImplName, 
                         javaServerSide, javaPackageParent, javaSrcPath, 
-                        javaParsingData, specFiles, new File(reportFile));
+                        javaParsingData[0], spec.getSpecFiles(), new File(reportFile));
             } catch (Exception ex) {
                 ex.printStackTrace();
                 throw ex;
             }
         }
+        if (memory != null) {
+            memory.writeArchive(archive.toPath());
+            System.out.println(String.format("Generated files: %d written to %s",
+                    memory.getFiles().size(), archive));
+            return;
+        }
+        for (final WriteIfChangedFileSaver saver: savers) {
+            FILES_CREATED.add(saver.getCreatedCount());
+            FILES_UPDATED.add(saver.getWrittenCount());
+            FILES_UNCHANGED.add(saver.getSkippedCount());
+        }
+        if (incremental) {
+            final CompileManifest manifest = new CompileManifest();
+            manifest.includes.addAll(spec.getIncludes().getIncludePaths());
+            manifest.fingerprint = CompileManifest.fingerprint(
+                    fingerprintOptions, specFile, manifest.includes);
+            for (final WriteIfChangedFileSaver saver: savers)
+                for (final File f: saver.getOutputFiles())
+                    manifest.outputs.add(f.getAbsolutePath());
+            manifest.write(outDir);
+        }
+    }
+
+    /** Get the file to which a compile report is written, as set by the
+     * KB_SDK_COMPILE_REPORT_FILE environment variable or system property.
+     * @return the report file, or null if no report is written.
+     */
+    public static String getReportFile() {
+        String reportFile = System.getenv("KB_SDK_COMPILE_REPORT_FILE");
+        if (reportFile == null || reportFile.isEmpty())
+            reportFile = System.getProperty("KB_SDK_COMPILE_REPORT_FILE");
+        return reportFile == null || reportFile.isEmpty() ? null : reportFile;
+    }
+
+    /** Print the number of generated files that were created, updated, or left unchanged
+     * because their content didn't change, for all compiles so far in this process.
+     * @param out where to print the statistics.
+     */
+    public static void printStats(final PrintStream out) {
+        out.println(String.format("Generated files: %d created, %d updated, %d unchanged",
+                FILES_CREATED.sum(), FILES_UPDATED.sum(), FILES_UNCHANGED.sum()));
+    }
+
+    private static void writeTypeSchemas(
+            final Map<String, Map<String, String>> typeSchemas,
+            final FileSaver jsonSchemas)
+            throws IOException {
+        for (String module : typeSchemas.keySet()) {
+            Map<String, String> typeToSchema = typeSchemas.get(module);
+            for (String type : typeToSchema.keySet()) {
+                try (Writer w = jsonSchemas.openWriter(module + "/" + type + ".json")) {
+                    w.write(typeToSchema.get(type));
+                }
+            }
+        }
+    }
+
+    /* Runs the generation stages concurrently on at most the given number of threads, or the
+     * number of available processors if less than 1. Stage failures are thrown in stage
+     * order, so the reported error doesn't depend on thread timing.
+     */
+    private static void runStages(final List<Callable<Void>> stages, int threads)
+            throws Exception {
+        if (threads < 1)
+            threads = Runtime.getRuntime().availableProcessors();
+        if (threads == 1 || stages.size() < 2) {
+            for (final Callable<Void> stage: stages)
+                stage.call();
+            return;
+        }
+        final ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(threads, stages.size()));
+        try {
+            for (final Future<Void> f: pool.invokeAll(stages)) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception)
+                        throw (Exception) e.getCause();
+                    throw e;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /* Generated files are only rewritten when their content changes, so no-op compiles
+     * don't update modification times and invalidate downstream build caches.
+     */
+    private static FileSaver createFileSaver(
+            final File dir,
+            final File outDir,
+            final List<WriteIfChangedFileSaver> savers,
+            final InMemoryFileSaver memory)
+            throws IOException {
+        if (memory != null) {
+            final Path rel = outDir.getAbsoluteFile().toPath().normalize().relativize(
+                    dir.getAbsoluteFile().toPath().normalize());
+            if (rel.startsWith(".."))
+                throw new IllegalArgumentException("Output directory " + dir +
+                        " must be inside " + outDir + " when writing an archive");
+            return memory.withPrefix(rel.toString());
+        }
+        final WriteIfChangedFileSaver saver = new WriteIfChangedFileSaver(new DiskFileSaver(dir));
+        savers.add(saver);
+        return saver;
     }
 	
     private static File correctRelativePath(String javaSrcPath, File outDir) {
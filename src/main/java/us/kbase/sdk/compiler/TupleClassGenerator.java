@@ -0,0 +1,170 @@
+package us.kbase.sdk.compiler;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import us.kbase.kidl.KidlParseException;
+import us.kbase.sdk.util.FileSaver;
+
+/** Generates the TupleN classes in the {@value #PACKAGE} package that are shared by all
+ * generated Java code.
+ *
+ * The classes are the same for every module, so the source for each arity is built once per
+ * process, and a class file that already exists with the same content, e.g. from installing
+ * another client into the same directory, is not written again.
+ *
+ * Tuple elements are stored in one field each, and the map for additional properties is only
+ * allocated when it's first used.
+ */
+public class TupleClassGenerator {
+
+	/** The package containing the tuple classes. */
+	public static final String PACKAGE = "us.kbase.common.service";
+
+	private static final ConcurrentMap<Integer, String> SOURCES = new ConcurrentHashMap<>();
+
+	private TupleClassGenerator() {}
+
+	/** Get the path of the source file for a tuple class relative to the source root.
+	 * @param arity the number of elements in the tuple.
+	 * @return the path.
+	 */
+	public static String getPath(final int arity) {
+		return PACKAGE.replace('.', '/') + "/Tuple" + arity + ".java";
+	}
+
+	/** Get the source code for a tuple class.
+	 * @param arity the number of elements in the tuple.
+	 * @return the source code.
+	 * @throws KidlParseException if the arity is less than 1.
+	 */
+	public static String getSource(final int arity) throws KidlParseException {
+		if (arity < 1)
+			throw new KidlParseException("Wrong tuple type: " + arity);
+		return SOURCES.computeIfAbsent(arity, TupleClassGenerator::buildSource);
+	}
+
+	/** Write tuple classes to a source root, skipping any class files that already exist with
+	 * the same content.
+	 * @param arities the arities of the tuple classes to write.
+	 * @param srcOut the source root.
+	 * @return the number of files that were written.
+	 * @throws KidlParseException if an arity is less than 1.
+	 * @throws IOException if a file couldn't be read or written.
+	 */
+	public static int write(final Set<Integer> arities, final FileSaver srcOut)
+			throws KidlParseException, IOException {
+		requireNonNull(srcOut, "srcOut");
+		int count = 0;
+		for (final int arity: arities) {
+			if (writeIfChanged(getPath(arity), getSource(arity), srcOut)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/* Write a file unless a file with the same content already exists at the path.
+	 * Returns true if the file was written.
+	 */
+	static boolean writeIfChanged(final String path, final String source, final FileSaver srcOut)
+			throws IOException {
+		if (isPresent(srcOut.getAsFileOrNull(path), source)) {
+			return false;
+		}
+		try (final Writer w = srcOut.openWriter(path)) {
+			w.write(source);
+		}
+		return true;
+	}
+
+	private static boolean isPresent(final File file, final String source) throws IOException {
+		if (file == null || !file.isFile()) {
+			return false;
+		}
+		// DiskFileSaver writes UTF-8
+		final byte[] expected = source.getBytes(StandardCharsets.UTF_8);
+		return file.length() == expected.length &&
+				Arrays.equals(Files.readAllBytes(file.toPath()), expected);
+	}
+
+	private static String buildSource(final int arity) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < arity; i++) {
+			if (sb.length() > 0)
+				sb.append(", ");
+			sb.append('T').append(i + 1);
+		}
+		final List<String> classLines = new ArrayList<String>(Arrays.asList(
+				"package " + PACKAGE + ";",
+				"",
+				"import java.util.HashMap;",
+				"import java.util.Map;",
+				"import com.fasterxml.jackson.annotation.JsonAnyGetter;",
+				"import com.fasterxml.jackson.annotation.JsonAnySetter;",
+				"",
+				"public class Tuple" + arity + " <" + sb + "> {"
+				));
+		for (int i = 0; i < arity; i++) {
+			classLines.add("    private T" + (i + 1) + " e" + (i + 1) + ";");
+		}
+		classLines.add("    private Map<String, Object> additionalProperties;");
+		final StringBuilder toStr = new StringBuilder();
+		for (int i = 0; i < arity; i++) {
+			final String e = "e" + (i + 1);
+			final String t = "T" + (i + 1);
+			classLines.addAll(Arrays.asList(
+					"",
+					"    public " + t + " getE" + (i + 1) + "() {",
+					"        return " + e + ";",
+					"    }",
+					"",
+					"    public void setE" + (i + 1) + "(" + t + " " + e + ") {",
+					"        this." + e + " = " + e + ";",
+					"    }",
+					"",
+					"    public Tuple" + arity + "<" + sb + "> withE" + (i + 1) + "(" + t + " " + e +
+							") {",
+					"        this." + e + " = " + e + ";",
+					"        return this;",
+					"    }"
+					));
+			if (i > 0)
+				toStr.append(", ");
+			toStr.append(e).append("=\" + ").append(e).append(" + \"");
+		}
+		classLines.addAll(Arrays.asList(
+				"",
+				"    @Override",
+				"    public String toString() {",
+				"        return \"Tuple" + arity + " [" + toStr + "]\";",
+				"    }",
+				"",
+				"    @JsonAnyGetter",
+				"    public Map<String, Object> getAdditionalProperties() {",
+				"        if (this.additionalProperties == null) {",
+				"            this.additionalProperties = new HashMap<String, Object>();",
+				"        }",
+				"        return this.additionalProperties;",
+				"    }",
+				"",
+				"    @JsonAnySetter",
+				"    public void setAdditionalProperties(String name, Object value) {",
+				"        getAdditionalProperties().put(name, value);",
+				"    }",
+				"}"
+				));
+		return String.join("\n", classLines) + "\n";
+	}
+}
@@ -1,19 +1,14 @@
 package us.kbase.sdk.compiler.report;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
-import java.io.StringReader;
-import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
 
 import us.kbase.common.service.UObject;
 import us.kbase.kidl.KbFuncdef;
@@ -27,6 +22,8 @@ import us.kbase.sdk.ModuleBuilder;
 import us.kbase.sdk.compiler.JavaData;
 import us.kbase.sdk.compiler.JavaModule;
 import us.kbase.sdk.compiler.JavaTypeGenerator;
+import us.kbase.sdk.compiler.PrevCodeParser;
+import us.kbase.sdk.compiler.PrevCodeParser.Region;
 import us.kbase.sdk.compiler.TemplateBasedGenerator;
 import us.kbase.sdk.util.DiskFileSaver;
 import us.kbase.sdk.util.FileSaver;
@@ -81,8 +78,7 @@ public class CompilationReporter {
             return;
         }
         System.out.println("Preparing SDK compilation report...");
-        String implText = IOUtils.toString(new LineNumberReader(new FileReader(
-                implFile)));
+        String implText = FileUtils.readFileToString(implFile);
         Report report = createReport(specFiles, sdkVersion, sdkGitCommit,
                 moduleName, module, implFile.getCanonicalPath(), comment, implText);
         UObject.getMapper().writeValue(reportFile, report);
@@ -94,16 +90,24 @@ public class CompilationReporter {
             KbModule module, String implFilePath, String implCommentPrefix, 
             String implText) throws Exception, IOException {
         Map<String, FunctionPlace> funcPositions = new LinkedHashMap<String, FunctionPlace>();
-        String commentPrefix = Pattern.quote(implCommentPrefix);
         Map<String, Function> functions = new LinkedHashMap<String, Function>();
+        List<String> funcNames = new ArrayList<String>();
+        for (KbModuleComp comp : module.getModuleComponents())
+            if (comp instanceof KbFuncdef)
+                funcNames.add(((KbFuncdef)comp).getName());
+        // split on \n only, as the markers must be followed by \n. The last segment is
+        // either empty or not terminated, so it can't be a marker
+        List<String> lines = new ArrayList<String>(Arrays.asList(implText.split("\n", -1)));
+        lines.remove(lines.size() - 1);
+        Map<String, Region> regions = PrevCodeParser.findRegions(lines, implCommentPrefix,
+                funcNames);
+        int[] lineNumbers = lineNumbers(lines);
         for (KbModuleComp comp : module.getModuleComponents()) {
             if (comp instanceof KbFuncdef) {
                 KbFuncdef func = (KbFuncdef)comp;
                 String funcName = func.getName();
-                Pattern p = Pattern.compile(MessageFormat.format(".*" + commentPrefix + 
-                        "BEGIN {0}\n(.*\n)?[ \t]*" + commentPrefix + "END {0}\n.*", 
-                        funcName), Pattern.DOTALL);
-                FunctionPlace place = checkMatch(funcPositions, p, implText);
+                FunctionPlace place = toPlace(regions.get(PrevCodeParser.METHOD + funcName),
+                        lineNumbers);
                 if (place != null)
                     funcPositions.put(funcName, place);
                 Function f = new Function();
@@ -147,21 +151,30 @@ public class CompilationReporter {
         return report;
     }
 
-    private static FunctionPlace checkMatch(Map<String, FunctionPlace> code, Pattern matcher,
-            String fullText) throws Exception {
-        Matcher m = matcher.matcher(fullText);
-        if (m.matches()) {
-            int start = m.start(1);
-            int end = m.end(1);
-            if (start >= 0 && end >= start) {
-                LineNumberReader lnr = new LineNumberReader(new StringReader(fullText));
-                lnr.skip(start);
-                int l1 = lnr.getLineNumber();
-                lnr.skip(end - start);
-                int l2 = lnr.getLineNumber() + 1;
-                return new FunctionPlace().with(l1, l2);
-            }
+    /* Reports are expected to count lines like LineNumberReader, where a lone \r also ends
+     * a line. Returns the line number at the start of each \n terminated line.
+     */
+    private static int[] lineNumbers(List<String> lines) {
+        int[] ret = new int[lines.size()];
+        int count = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            ret[i] = count;
+            String line = lines.get(i);
+            int len = line.endsWith("\r") ? line.length() - 1 : line.length();
+            for (int j = 0; j < len; j++)
+                if (line.charAt(j) == '\r')
+                    count++;
+            count++;
         }
-        return null;
+        return ret;
+    }
+
+    private static FunctionPlace toPlace(Region region, int[] lineNumbers) {
+        // no place for methods without code between the markers
+        if (region == null || region.getCode().isEmpty())
+            return null;
+        // the start of the first code line and the end marker line, 1-based
+        return new FunctionPlace().with(lineNumbers[region.getBeginLine()],
+                lineNumbers[region.getEndLine() - 1] + 1);
     }
 }
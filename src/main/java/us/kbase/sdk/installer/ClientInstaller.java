@@ -40,6 +40,7 @@ import us.kbase.sdk.util.DirUtils;
 import us.kbase.sdk.util.DiskFileSaver;
 import us.kbase.sdk.util.FileSaver;
 import us.kbase.sdk.util.TextUtils;
+import us.kbase.sdk.util.WriteIfChangedFileSaver;
 
 public class ClientInstaller {
     private final File moduleDir;
@@ -258,7 +259,8 @@ public class ClientInstaller {
         }
         File libDir = new File(moduleDir, libDirName == null ? "lib" : libDirName);
         if (isJava) {
-            FileSaver javaSrcDir = new DiskFileSaver(new File(new File(libDir, "src"), "installed_clients"));
+            FileSaver javaSrcDir = new WriteIfChangedFileSaver(new DiskFileSaver(
+                    new File(new File(libDir, "src"), "installed_clients")));
             String javaPackageParent = ".";
             String customClientClassName = TextUtils.capitalize(clientName) + "Client";
             URL urlEndpoint = url == null ? null : new URL(url);
@@ -269,7 +271,7 @@ public class ClientInstaller {
             String pyClientName = null;
             if (isPython)
                 pyClientName = "installed_clients." + clientName + "Client";
-            FileSaver output = new DiskFileSaver(libDir);
+            FileSaver output = new WriteIfChangedFileSaver(new DiskFileSaver(libDir));
             TemplateBasedGenerator.generate(services, url, isPython, pyClientName, false, null,
                     null, ip, output, clientAsyncVer, dynservVer, semanticVersion, gitUrl,
                     gitCommitHash);
@@ -3,58 +3,151 @@ package us.kbase.sdk.templates;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.PrintStream;
 import java.io.Writer;
-import java.nio.charset.Charset;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
 
-import us.kbase.sdk.util.TextUtils;
+import us.kbase.sdk.util.NormalizedFileWriter;
 
 public class TemplateFormatter {
 
-    public static boolean formatTemplate(String templateName, Map<String, Object> context, 
+    private static final String TEMPLATE_PATH =
+            TemplateFormatter.class.getPackage().getName().replace('.', '/') + "/";
+
+    private static final ConcurrentMap<String, Template> TEMPLATES =
+            new ConcurrentHashMap<String, Template>();
+    private static final ConcurrentMap<String, TemplateStats> STATS =
+            new ConcurrentHashMap<String, TemplateStats>();
+
+    // entries shared by every template context. Chained under the per call context, so
+    // callers can still override them.
+    private static final VelocityContext SHARED_CONTEXT = new VelocityContext();
+    static {
+        SHARED_CONTEXT.put("esc", new VelocityEscaper());
+    }
+
+    /* Initialized on first use via the holder idiom, so the engine is only set up once
+     * per process and only if a template is actually rendered.
+     */
+    private static class EngineHolder {
+        private static final VelocityEngine ENGINE = createEngine();
+
+        private static VelocityEngine createEngine() {
+            final VelocityEngine engine = new VelocityEngine();
+            engine.setProperty(RuntimeConstants.RESOURCE_LOADER, "classpath");
+            engine.setProperty("classpath.resource.loader.class",
+                    ClasspathResourceLoader.class.getName());
+            // templates are cached in TEMPLATES, no need for velocity to cache them as well
+            engine.setProperty("classpath.resource.loader.cache", "false");
+            engine.setProperty(RuntimeConstants.INPUT_ENCODING, "UTF-8");
+            try {
+                engine.init();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to initialize the template engine", e);
+            }
+            return engine;
+        }
+    }
+
+    public static boolean formatTemplate(String templateName, Map<String, Object> context,
             File output) throws IOException {
-        StringWriter sw = new StringWriter();
-        boolean ret = formatTemplate(templateName, context, sw);
-        sw.close();
-        StringReader sr = new StringReader(sw.toString());
-        TextUtils.writeFileLines(TextUtils.readReaderLines(sr, true), output);
+        return formatTemplate(templateName, context, output, false);
+    }
+
+    /** Render a template into a UTF-8 file with "\n" line endings.
+     * @param templateName the name of the template.
+     * @param context the template context.
+     * @param output the file to write.
+     * @param atomic true to write via a temporary file that replaces the output file once
+     * rendering is complete, so a failed or interrupted render never leaves a truncated file.
+     * @return true.
+     * @throws IOException if the file couldn't be written.
+     */
+    public static boolean formatTemplate(String templateName, Map<String, Object> context,
+            File output, boolean atomic) throws IOException {
+        final NormalizedFileWriter w = new NormalizedFileWriter(output.toPath(), atomic);
+        boolean ret = false;
+        boolean done = false;
+        try {
+            ret = formatTemplate(templateName, context, w);
+            done = true;
+        } finally {
+            if (done) {
+                w.close();
+            } else {
+                w.abort();
+            }
+        }
         return ret;
     }
-    
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-    public static boolean formatTemplate(String templateName, Map<String, Object> context, 
+
+    public static boolean formatTemplate(String templateName, Map<String, Object> context,
             Writer output) {
         try {
-            if (!context.containsKey("esc")) {
-                Map untyped = (Map)context;
-                untyped.put("esc", new VelocityEscaper());
+            final TemplateStats stats = STATS.computeIfAbsent(
+                    templateName, k -> new TemplateStats());
+            final long start = System.nanoTime();
+            Template template = TEMPLATES.get(templateName);
+            if (template == null) {
+                template = TEMPLATES.computeIfAbsent(templateName, k -> loadTemplate(k));
+            } else {
+                stats.cacheHits.increment();
             }
-            Reader input = new InputStreamReader(TemplateFormatter.class.getResourceAsStream(
-                    templateName + "." + "vm.properties"), Charset.forName("utf-8"));
-            VelocityContext cntx = new VelocityContext(context);
-            boolean ret = Velocity.evaluate(cntx, output, "Template " + templateName, input);
-            input.close();
+            template.merge(new VelocityContext(context, SHARED_CONTEXT), output);
             output.flush();
-            return ret;
+            stats.renders.increment();
+            stats.renderNanos.add(System.nanoTime() - start);
+            return true;
         } catch (Exception ex) {
             throw new IllegalStateException("Problems with template evaluation (" + templateName + ")", ex);
         }
     }
-    
+
+    private static Template loadTemplate(final String templateName) {
+        try {
+            return EngineHolder.ENGINE.getTemplate(
+                    TEMPLATE_PATH + templateName + "." + "vm.properties", "UTF-8");
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to load template " + templateName, e);
+        }
+    }
+
+    /** Print the number of renders, template cache hits, and total render time per template
+     * for all templates rendered so far in this process.
+     * @param out where to print the statistics.
+     */
+    public static void printStats(final PrintStream out) {
+        for (final Map.Entry<String, TemplateStats> e: new TreeMap<>(STATS).entrySet()) {
+            final TemplateStats s = e.getValue();
+            out.println(String.format("Template %s: %d renders, %d cache hits, %.1f ms",
+                    e.getKey(), s.renders.sum(), s.cacheHits.sum(),
+                    s.renderNanos.sum() / 1000000.0));
+        }
+    }
+
     public static InputStream getResource(final String resource) {
         return TemplateFormatter.class.getResourceAsStream(resource);
     }
-    
+
     public static class VelocityEscaper {
         public String print(String text) {
             return text;
         }
     }
+
+    private static class TemplateStats {
+        private final LongAdder renders = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder renderNanos = new LongAdder();
+    }
 }
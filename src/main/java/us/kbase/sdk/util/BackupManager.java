@@ -0,0 +1,250 @@
+package us.kbase.sdk.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/** Makes backup copies of files before they're overwritten in place, e.g. implementation
+ * files during compilation and deploy.cfg files at container start up.
+ *
+ * With the default, {@link #always()}, policy each backup is written next to the original file,
+ * named as the caller has always named its backups, and is never removed. The other policies write backups to a sidecar directory,
+ * {@value #SIDECAR_DIR} next to the original file by default, in a subdirectory named by a
+ * hash of the original file's absolute path. Backups in the sidecar directory are named by
+ * timestamp and content hash, and can be limited
+ * to the last N copies and / or only made when the file content has changed since the last
+ * backup.
+ *
+ * The policy can be set with the {@value #POLICY_ENV_VAR} environment variable, see
+ * {@link #fromEnvironment()}.
+ */
+public class BackupManager {
+
+	/** The environment variable containing the backup policy. */
+	public static final String POLICY_ENV_VAR = "KB_SDK_BACKUP_POLICY";
+	/** The environment variable containing an alternate root directory for backups. */
+	public static final String DIR_ENV_VAR = "KB_SDK_BACKUP_DIR";
+	/** The name of the default sidecar directory for backups. */
+	public static final String SIDECAR_DIR = ".kb_sdk_backups";
+
+	private static final String KEEP_LAST = "keep-last=";
+	private static final String IF_CHANGED = "if-changed";
+	private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern(
+			"yyyy-MM-dd'T'HH-mm-ss-SSS");
+	// the number of hex characters of the content hash to store in the backup file name
+	private static final int HASH_CHARS = 16;
+
+	private final boolean enabled;
+	private final boolean sidecar;
+	private final boolean onlyIfChanged;
+	private final int keepLast;
+	private final Path root;
+
+	private BackupManager(
+			final boolean enabled,
+			final boolean sidecar,
+			final boolean onlyIfChanged,
+			final int keepLast,
+			final Path root) {
+		this.enabled = enabled;
+		this.sidecar = sidecar;
+		this.onlyIfChanged = onlyIfChanged;
+		this.keepLast = keepLast;
+		this.root = root;
+	}
+
+	/** Get a backup manager that backs up files next to the original file every time.
+	 * @return the backup manager.
+	 */
+	public static BackupManager always() {
+		return new BackupManager(true, false, false, 0, null);
+	}
+
+	/** Get a backup manager that never makes backups.
+	 * @return the backup manager.
+	 */
+	public static BackupManager off() {
+		return new BackupManager(false, false, false, 0, null);
+	}
+
+	/** Get a backup manager that backs up files to the sidecar directory.
+	 * @param keepLast the number of backups to keep per file, or 0 to keep all backups.
+	 * @param onlyIfChanged true to skip the backup if the file is identical to the last backup.
+	 * @param root the directory in which to store the hashed per file backup directories, or
+	 * null to use {@value #SIDECAR_DIR} in the original file's directory.
+	 * @return the backup manager.
+	 */
+	public static BackupManager sidecar(
+			final int keepLast,
+			final boolean onlyIfChanged,
+			final Path root) {
+		if (keepLast < 0) {
+			throw new IllegalArgumentException("keepLast must be >= 0");
+		}
+		return new BackupManager(true, true, onlyIfChanged, keepLast, root);
+	}
+
+	/** Get a backup manager from a policy string. The policy is one of
+	 * <ul>
+	 * <li>always - back up next to the original file every time. This is the default.</li>
+	 * <li>off - never back up.</li>
+	 * <li>a comma separated combination of keep-last=N, which keeps the last N backups, and
+	 * if-changed, which only backs up if the file has changed since the last backup. These
+	 * backups are stored in the sidecar directory.</li>
+	 * </ul>
+	 * @param policy the policy. Null or whitespace only input results in the default policy.
+	 * @param root the root directory for sidecar backups, or null for the default.
+	 * @return the backup manager.
+	 */
+	public static BackupManager fromPolicy(final String policy, final Path root) {
+		if (policy == null || policy.isBlank()) {
+			return always();
+		}
+		final String p = policy.trim().toLowerCase();
+		if (p.equals("always")) {
+			return always();
+		}
+		if (p.equals("off")) {
+			return off();
+		}
+		int keepLast = 0;
+		boolean onlyIfChanged = false;
+		for (final String part: p.split(",", -1)) {
+			final String opt = part.trim();
+			if (opt.equals(IF_CHANGED)) {
+				onlyIfChanged = true;
+			} else if (opt.startsWith(KEEP_LAST)) {
+				try {
+					keepLast = Integer.parseInt(opt.substring(KEEP_LAST.length()));
+				} catch (NumberFormatException e) {
+					keepLast = -1;
+				}
+				if (keepLast < 1) {
+					throw new IllegalArgumentException(
+							"Illegal backup retention count in policy: " + policy);
+				}
+			} else {
+				throw new IllegalArgumentException("Illegal backup policy: " + policy);
+			}
+		}
+		return sidecar(keepLast, onlyIfChanged, root);
+	}
+
+	/** Get a backup manager from the {@value #POLICY_ENV_VAR} and {@value #DIR_ENV_VAR}
+	 * environment variables. See {@link #fromPolicy(String, Path)}.
+	 * @return the backup manager.
+	 */
+	public static BackupManager fromEnvironment() {
+		final String dir = System.getenv(DIR_ENV_VAR);
+		return fromPolicy(
+				System.getenv(POLICY_ENV_VAR),
+				dir == null || dir.isBlank() ? null : Paths.get(dir));
+	}
+
+	/** Back up a file.
+	 * @param file the file to back up.
+	 * @param legacySuffix the format of the timestamped suffix added to the file name when the
+	 * backup is written next to the original file, e.g. "'.bak-'yyyy-MM-dd-HH-mm-ss".
+	 * @return the backup file, or empty if no backup was made.
+	 * @throws IOException if the backup could not be written.
+	 */
+	public Optional<Path> backup(final Path file, final DateTimeFormatter legacySuffix)
+			throws IOException {
+		requireNonNull(file, "file");
+		requireNonNull(legacySuffix, "legacySuffix");
+		if (!enabled) {
+			return Optional.empty();
+		}
+		final LocalDateTime now = LocalDateTime.now();
+		if (!sidecar) {
+			final Path backup = file.resolveSibling(
+					file.getFileName() + now.format(legacySuffix));
+			Files.copy(file, backup, StandardCopyOption.REPLACE_EXISTING);
+			return Optional.of(backup);
+		}
+		final Path dir = getBackupDir(file);
+		final String prefix = file.getFileName() + ".";
+		final String hash = hash(file);
+		final List<Path> existing = listBackups(dir, prefix);
+		if (onlyIfChanged && !existing.isEmpty()) {
+			final String latest = existing.get(existing.size() - 1).getFileName().toString();
+			if (latest.endsWith("." + hash)) {
+				return Optional.empty();
+			}
+		}
+		Files.createDirectories(dir);
+		// timestamp first so the backups sort by age
+		final Path backup = dir.resolve(prefix + now.format(TIMESTAMP) + "." + hash);
+		Files.copy(file, backup, StandardCopyOption.REPLACE_EXISTING);
+		if (keepLast > 0) {
+			existing.remove(backup);
+			existing.add(backup);
+			for (int i = 0; i < existing.size() - keepLast; i++) {
+				Files.deleteIfExists(existing.get(i));
+			}
+		}
+		return Optional.of(backup);
+	}
+
+	/** Get the directory where sidecar backups of a file are stored. The directory may not
+	 * exist.
+	 * @param file the file.
+	 * @return the backup directory.
+	 */
+	public Path getBackupDir(final Path file) {
+		final Path abs = requireNonNull(file, "file").toAbsolutePath().normalize();
+		final Path r = root == null ? abs.resolveSibling(SIDECAR_DIR) : root;
+		final MessageDigest md = sha256();
+		final String hash = HexFormat.of().formatHex(
+				md.digest(abs.toString().getBytes(StandardCharsets.UTF_8)));
+		return r.resolve(hash.substring(0, HASH_CHARS));
+	}
+
+	private static List<Path> listBackups(final Path dir, final String prefix)
+			throws IOException {
+		if (!Files.isDirectory(dir)) {
+			return new ArrayList<>();
+		}
+		final List<Path> ret;
+		try (final Stream<Path> s = Files.list(dir)) {
+			ret = new ArrayList<>(s.filter(
+					p -> p.getFileName().toString().startsWith(prefix)).toList());
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	private static String hash(final Path file) throws IOException {
+		final MessageDigest md = sha256();
+		try (final InputStream is = new DigestInputStream(Files.newInputStream(file), md)) {
+			is.transferTo(OutputStream.nullOutputStream());
+		}
+		return HexFormat.of().formatHex(md.digest()).substring(0, HASH_CHARS);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
@@ -6,10 +6,9 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
 import org.ini4j.Ini;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -22,13 +21,17 @@ public class DeployConfigGenerator {
 	 * SDK was the least clunky solution.
 	 */
 	
+	private static final DateTimeFormatter BACKUP_SUFFIX =
+			DateTimeFormatter.ofPattern("'.bak.'yyyy-MM-dd'T'HH-mm-ss-SSS");
+	
 	private static final Pattern MUSTACHE_ENTRY = Pattern.compile(
 			"\\{\\{\\s*([a-zA-Z0-9_]+)\\s*\\}\\}"
 	);
 	
 	/** Generate a KBase service / app deploy.cfg file given a Mustache template and a properties
 	 * ini file.
-	 * The template file will be backed up and then overwritten in place.
+	 * The template file will be backed up according to the policy from
+	 * {@link BackupManager#fromEnvironment()} and then overwritten in place.
 	 * @param templatePath - the path to the template file.
 	 * @param propertiesPath - the path to the properties / .ini file containing the properties
 	 * to be inserted into the mustache template. The properties must be in a section called
@@ -39,7 +42,26 @@ public class DeployConfigGenerator {
 	 */
 	public static void generateDeployConfig(final Path templatePath, final Path propertiesPath)
 			throws IOException {
+		generateDeployConfig(templatePath, propertiesPath, BackupManager.fromEnvironment());
+	}
+
+	/** Generate a KBase service / app deploy.cfg file given a Mustache template and a properties
+	 * ini file.
+	 * The template file will be backed up according to the backup policy and then overwritten
+	 * in place.
+	 * @param templatePath - the path to the template file.
+	 * @param propertiesPath - the path to the properties / .ini file. See
+	 * {@link #generateDeployConfig(Path, Path)}.
+	 * @param backups - the backup policy for the template file.
+	 * @throws IOException if file reads or writes fail.
+	 */
+	public static void generateDeployConfig(
+			final Path templatePath,
+			final Path propertiesPath,
+			final BackupManager backups)
+			throws IOException {
 		requireNonNull(templatePath, "templatePath");
+		requireNonNull(backups, "backups");
 
 		final String templateText = Files.readString(templatePath, StandardCharsets.UTF_8);
 
@@ -70,14 +92,7 @@ public class DeployConfigGenerator {
 		}
 		final String output = renderTemplate(templateText, props);
 
-		// Create human-readable backup filename
-		final String timestamp = LocalDateTime.now()
-				.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH-mm-ss-SSS"));
-		final Path backupPath = templatePath.resolveSibling(
-				templatePath.getFileName() + ".bak." + timestamp
-		);
-
-		Files.writeString(backupPath, templateText, StandardCharsets.UTF_8);
+		backups.backup(templatePath, BACKUP_SUFFIX);
 		Files.writeString(templatePath, output, StandardCharsets.UTF_8);
 	}
 
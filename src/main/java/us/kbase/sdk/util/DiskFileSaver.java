@@ -6,9 +6,15 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/** A {@link FileSaver} that writes files under a root directory, encoding text as UTF-8. */
 public class DiskFileSaver implements FileSaver {
     private File rootDir;
+    // directories known to exist, so they aren't checked for every file written
+    private final Set<File> knownDirs = ConcurrentHashMap.newKeySet();
     
     public DiskFileSaver(File rootDir) {
         this.rootDir = rootDir;
@@ -17,35 +23,41 @@ public class DiskFileSaver implements FileSaver {
     }
     
     public File getRootDir() {
-        if (!this.rootDir.exists())
-            this.rootDir.mkdirs();
         return rootDir;
     }
+
+    private void ensureDir(File dir) {
+        if (!knownDirs.contains(dir)) {
+            if (!dir.exists())
+                dir.mkdirs();
+            knownDirs.add(dir);
+        }
+    }
     
     @Override
     public Writer openWriter(String path) throws IOException {
         File f = getAsFileOrNull(path);
-        File dir = f.getParentFile();
-        if (!dir.exists())
-            dir.mkdirs();
-        return new FileWriter(f);
+        ensureDir(f.getParentFile());
+        return new FileWriter(f, StandardCharsets.UTF_8);
     }
     
     @Override
     public OutputStream openStream(String path) throws IOException {
         File f = getAsFileOrNull(path);
-        File dir = f.getParentFile();
-        if (!dir.exists())
-            dir.mkdirs();
+        ensureDir(f.getParentFile());
         return new FileOutputStream(f);
     }
     
     @Override
     public File getAsFileOrNull(String path) throws IOException {
+        return new File(rootDir, checkRelativePath(path));
+    }
+
+    static String checkRelativePath(String path) throws IOException {
         path = path.replace('\\', '/');
         if (path.isEmpty() || path.startsWith("/") || path.equals("..") || 
                 path.startsWith("../") || path.contains("/../") || path.endsWith("/.."))
             throw new IOException("Unallowed relative path: " + path);
-        return new File(getRootDir(), path);
+        return path;
     }
 }
@@ -0,0 +1,234 @@
+package us.kbase.sdk.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** A {@link FileSaver} that keeps the saved files in memory, so a whole output tree can be
+ * written to a single archive rather than as many small files.
+ *
+ * Since there are no files on disk, {@link #getAsFileOrNull(String)} always returns null, and
+ * generators that merge in code from previously generated files start from scratch.
+ *
+ * Archive entries are written in path order with fixed timestamps, so the same content always
+ * produces the same archive.
+ */
+public class InMemoryFileSaver implements FileSaver {
+
+	private static final LocalDateTime ZIP_TIME = LocalDateTime.of(1980, 1, 1, 0, 0);
+	private static final int TAR_BLOCK = 512;
+
+	private final Map<String, byte[]> files;
+	private final String prefix;
+
+	/** Create an empty file saver. */
+	public InMemoryFileSaver() {
+		this(new ConcurrentSkipListMap<>(), "");
+	}
+
+	private InMemoryFileSaver(final Map<String, byte[]> files, final String prefix) {
+		this.files = files;
+		this.prefix = prefix;
+	}
+
+	/** Get a file saver that saves into the same file tree under a subdirectory.
+	 * @param dir the subdirectory, relative to the root of this saver. An empty string means
+	 * the root of this saver.
+	 * @return the new file saver.
+	 * @throws IOException if the directory is not a legal relative path.
+	 */
+	public InMemoryFileSaver withPrefix(final String dir) throws IOException {
+		requireNonNull(dir, "dir");
+		if (dir.isEmpty()) {
+			return this;
+		}
+		String d = DiskFileSaver.checkRelativePath(dir);
+		if (!d.endsWith("/")) {
+			d += "/";
+		}
+		return new InMemoryFileSaver(files, prefix + d);
+	}
+
+	@Override
+	public Writer openWriter(final String path) throws IOException {
+		final String key = toKey(path);
+		return new StringWriter() {
+
+			@Override
+			public void close() throws IOException {
+				// encoded as by DiskFileSaver
+				files.put(key, toString().getBytes(StandardCharsets.UTF_8));
+			}
+		};
+	}
+
+	@Override
+	public OutputStream openStream(final String path) throws IOException {
+		final String key = toKey(path);
+		return new ByteArrayOutputStream() {
+
+			@Override
+			public void close() throws IOException {
+				files.put(key, toByteArray());
+			}
+		};
+	}
+
+	/** Always returns null, as the files only exist in memory.
+	 * @param path the path of the file.
+	 * @return null.
+	 * @throws IOException if the path is not a legal relative path.
+	 */
+	@Override
+	public File getAsFileOrNull(final String path) throws IOException {
+		toKey(path);
+		return null;
+	}
+
+	/** Get the files saved so far in the whole file tree, including files saved by savers
+	 * created with {@link #withPrefix(String)}.
+	 * @return a map of relative path to file content, sorted by path.
+	 */
+	public Map<String, byte[]> getFiles() {
+		return files;
+	}
+
+	private String toKey(final String path) throws IOException {
+		return prefix + DiskFileSaver.checkRelativePath(path);
+	}
+
+	/** Write all the files in the tree to an archive. The archive format is determined by the
+	 * file extension: .zip, .tar, or .tar.gz / .tgz.
+	 * @param archive the archive file to write.
+	 * @throws IOException if the archive couldn't be written.
+	 */
+	public void writeArchive(final Path archive) throws IOException {
+		final String name = archive.getFileName().toString().toLowerCase();
+		final boolean zip = name.endsWith(".zip");
+		final boolean tgz = name.endsWith(".tar.gz") || name.endsWith(".tgz");
+		if (!zip && !tgz && !name.endsWith(".tar")) {
+			throw new IllegalArgumentException(
+					"Archive file name must end with .zip, .tar, .tar.gz or .tgz: " + archive);
+		}
+		try (final OutputStream os = new BufferedOutputStream(Files.newOutputStream(archive))) {
+			if (zip) {
+				writeZip(os);
+			} else if (tgz) {
+				final GZIPOutputStream gz = new GZIPOutputStream(os);
+				writeTar(gz);
+				gz.finish();
+			} else {
+				writeTar(os);
+			}
+		}
+	}
+
+	/** Write all the files in the tree to a zip archive. The stream is not closed.
+	 * @param os the stream to write to.
+	 * @throws IOException if the archive couldn't be written.
+	 */
+	public void writeZip(final OutputStream os) throws IOException {
+		final ZipOutputStream zos = new ZipOutputStream(os);
+		for (final Map.Entry<String, byte[]> e: files.entrySet()) {
+			final ZipEntry entry = new ZipEntry(e.getKey());
+			entry.setTimeLocal(ZIP_TIME);
+			zos.putNextEntry(entry);
+			zos.write(e.getValue());
+			zos.closeEntry();
+		}
+		zos.finish();
+	}
+
+	/** Write all the files in the tree to a POSIX ustar archive. The stream is not closed.
+	 * @param os the stream to write to.
+	 * @throws IOException if the archive couldn't be written.
+	 */
+	public void writeTar(final OutputStream os) throws IOException {
+		for (final Map.Entry<String, byte[]> e: files.entrySet()) {
+			final byte[] content = e.getValue();
+			os.write(tarHeader(e.getKey(), content.length));
+			os.write(content);
+			final int pad = (TAR_BLOCK - content.length % TAR_BLOCK) % TAR_BLOCK;
+			os.write(new byte[pad]);
+		}
+		// end of archive marker
+		os.write(new byte[2 * TAR_BLOCK]);
+		os.flush();
+	}
+
+	private static byte[] tarHeader(final String path, final long size) throws IOException {
+		final byte[] h = new byte[TAR_BLOCK];
+		final byte[] p = utf8(path);
+		if (p.length <= 100) {
+			System.arraycopy(p, 0, h, 0, p.length);
+		} else {
+			// ustar splits long paths into a prefix of up to 155 bytes and a name of up to 100
+			int split = path.indexOf('/');
+			while (split > 0 && utf8(path.substring(split + 1)).length > 100) {
+				split = path.indexOf('/', split + 1);
+			}
+			final byte[] pre = split > 0 ? utf8(path.substring(0, split)) : null;
+			final byte[] nm = split > 0 ? utf8(path.substring(split + 1)) : p;
+			if (pre == null || pre.length > 155) {
+				throw new IOException("Path is too long for a tar archive: " + path);
+			}
+			System.arraycopy(nm, 0, h, 0, nm.length);
+			System.arraycopy(pre, 0, h, 345, pre.length);
+		}
+		putOctal(h, 100, 8, 0644);  // mode
+		putOctal(h, 108, 8, 0);  // uid
+		putOctal(h, 116, 8, 0);  // gid
+		putOctal(h, 124, 12, size);
+		putOctal(h, 136, 12, 0);  // mtime
+		h[156] = '0';  // regular file
+		System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, h, 257, 6);
+		h[263] = '0';
+		h[264] = '0';
+		// the checksum is calculated with the checksum field set to spaces
+		for (int i = 148; i < 156; i++) {
+			h[i] = ' ';
+		}
+		long sum = 0;
+		for (final byte b: h) {
+			sum += b & 0xff;
+		}
+		putOctal(h, 148, 7, sum);
+		return h;
+	}
+
+	private static byte[] utf8(final String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void putOctal(
+			final byte[] header,
+			final int offset,
+			final int length,
+			final long value)
+			throws IOException {
+		// zero padded, leaving room for the terminating null
+		final String s = Long.toOctalString(value);
+		if (s.length() > length - 1) {
+			throw new IOException("Value too large for a tar header: " + value);
+		}
+		final String padded = "0".repeat(length - 1 - s.length()) + s;
+		System.arraycopy(padded.getBytes(StandardCharsets.US_ASCII), 0, header, offset,
+				length - 1);
+		header[offset + length - 1] = 0;
+	}
+}
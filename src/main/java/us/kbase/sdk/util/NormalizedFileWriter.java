@@ -0,0 +1,133 @@
+package us.kbase.sdk.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/** A writer that streams text to a UTF-8 file, normalizing line endings as it goes.
+ *
+ * "\r\n" and lone "\r" are written as "\n", and a final "\n" is added to non-empty output
+ * that doesn't end with one. The file is the same as splitting the text into lines and writing
+ * them with {@link TextUtils#writeFileLines(java.util.List, java.io.File)}, which also writes
+ * UTF-8.
+ *
+ * In atomic mode the text is written to a temporary file in the target directory, which
+ * replaces the target file on {@link #close()}. Calling {@link #abort()} instead discards the
+ * temporary file, so the target is never left partially written.
+ */
+public class NormalizedFileWriter extends Writer {
+
+	private final Path target;
+	private final Path temp;
+	private final Writer out;
+	private boolean pendingCR = false;
+	private char last = '\n';
+	private boolean empty = true;
+	private boolean closed = false;
+
+	/** Open the writer.
+	 * @param target the file to write.
+	 * @param atomic true to write via a temporary file that replaces the target on close.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	public NormalizedFileWriter(final Path target, final boolean atomic) throws IOException {
+		this.target = requireNonNull(target, "target").toAbsolutePath();
+		final FileChannel channel;
+		if (atomic) {
+			// not Files.createTempFile, which would give the output owner only permissions
+			temp = this.target.resolveSibling("." + this.target.getFileName() + "." +
+					Long.toHexString(System.nanoTime()) + ".tmp");
+			channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE_NEW);
+		} else {
+			temp = null;
+			channel = FileChannel.open(this.target, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		}
+		out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void write(final char[] cbuf, final int off, final int len) throws IOException {
+		for (int i = off; i < off + len; i++) {
+			final char c = cbuf[i];
+			if (pendingCR) {
+				pendingCR = false;
+				if (c == '\n') {
+					continue;  // second half of a \r\n, already written as \n
+				}
+			}
+			if (c == '\r') {
+				pendingCR = true;
+				emit('\n');
+			} else {
+				emit(c);
+			}
+		}
+	}
+
+	private void emit(final char c) throws IOException {
+		out.write(c);
+		last = c;
+		empty = false;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/** Finish writing the file. In atomic mode the target file is replaced at this point. */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (!empty && last != '\n') {
+			out.write('\n');
+		}
+		out.close();
+		if (temp != null) {
+			if (Files.exists(target)) {
+				// keep the permissions, e.g. the executable bit, of the file being replaced
+				try {
+					Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+				} catch (UnsupportedOperationException e) {
+					// not a POSIX file system, nothing to keep
+				}
+			}
+			try {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	/** Stop writing without committing the output. In atomic mode the target file is left
+	 * untouched.
+	 * @throws IOException if the temporary file could not be removed.
+	 */
+	public void abort() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		out.close();
+		if (temp != null) {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
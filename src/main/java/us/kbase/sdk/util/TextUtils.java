@@ -13,6 +13,7 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -49,11 +50,12 @@ public class TextUtils {
 	}
 	
 	public static List<String> readFileLines(File f) throws IOException {
-		return readStreamLines(new FileInputStream(f));
+		return readReaderLines(new InputStreamReader(
+				new FileInputStream(f), StandardCharsets.UTF_8), true);
 	}
 
 	public static String readFileText(File f) throws IOException {
-		return readStreamText(new FileInputStream(f));
+		return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
 	}
 
 	public static List<String> readStreamLines(InputStream is) throws IOException {
@@ -79,7 +81,7 @@ public class TextUtils {
 	}
 	
 	public static void writeFileLines(List<String> lines, File targetFile) throws IOException {
-	    writeFileLines(lines, new FileWriter(targetFile));
+	    writeFileLines(lines, new FileWriter(targetFile, StandardCharsets.UTF_8));
 	}
 
 	public static void writeFileLines(List<String> lines, Writer targetFile) throws IOException {
@@ -0,0 +1,169 @@
+package us.kbase.sdk.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A {@link FileSaver} that buffers each file in memory and only passes it on to the wrapped
+ * saver when the content differs from the file that is already on disk. Unchanged files are
+ * left untouched, so their modification times stay stable across no-op regenerations.
+ *
+ * Files of the same size are compared by SHA-256 hash, streaming the existing file rather than
+ * reading it into memory.
+ *
+ * The comparison and write of a file are serialized across all instances of this class, so
+ * concurrent compiles that share an output directory, such as an absolute Java source or JSON
+ * schema directory in a batch compile, never interleave writes to the same file.
+ */
+public class WriteIfChangedFileSaver implements FileSaver {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final Object[] LOCKS = new Object[64];
+	static {
+		for (int i = 0; i < LOCKS.length; i++) {
+			LOCKS[i] = new Object();
+		}
+	}
+
+	private final FileSaver delegate;
+	private final Set<File> outputs = new LinkedHashSet<>();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+
+	/** Create the file saver.
+	 * @param delegate the file saver that will write any changed files.
+	 */
+	public WriteIfChangedFileSaver(final FileSaver delegate) {
+		this.delegate = requireNonNull(delegate, "delegate");
+	}
+
+	@Override
+	public Writer openWriter(final String path) throws IOException {
+		final File target = delegate.getAsFileOrNull(path);
+		return new StringWriter() {
+
+			private boolean closed = false;
+
+			@Override
+			public void close() throws IOException {
+				if (!closed) {
+					closed = true;
+					// encoded as by DiskFileSaver
+					save(path, target, toString().getBytes(StandardCharsets.UTF_8));
+				}
+			}
+		};
+	}
+
+	@Override
+	public OutputStream openStream(final String path) throws IOException {
+		final File target = delegate.getAsFileOrNull(path);
+		return new ByteArrayOutputStream() {
+
+			private boolean closed = false;
+
+			@Override
+			public void close() throws IOException {
+				if (!closed) {
+					closed = true;
+					save(path, target, toByteArray());
+				}
+			}
+		};
+	}
+
+	@Override
+	public File getAsFileOrNull(final String path) throws IOException {
+		return delegate.getAsFileOrNull(path);
+	}
+
+	/** Get the files passed through this saver so far, whether or not they were rewritten.
+	 * @return the output files in the order they were first saved.
+	 */
+	public List<File> getOutputFiles() {
+		synchronized (outputs) {
+			return new ArrayList<>(outputs);
+		}
+	}
+
+	/** Get the number of files that didn't exist and were created.
+	 * @return the number of created files.
+	 */
+	public long getCreatedCount() {
+		return created.sum();
+	}
+
+	/** Get the number of existing files that were rewritten because their content changed.
+	 * @return the number of rewritten files.
+	 */
+	public long getWrittenCount() {
+		return written.sum();
+	}
+
+	/** Get the number of existing files that were left untouched because their content was
+	 * unchanged.
+	 * @return the number of skipped files.
+	 */
+	public long getSkippedCount() {
+		return skipped.sum();
+	}
+
+	private void save(final String path, final File target, final byte[] content)
+			throws IOException {
+		synchronized (outputs) {
+			outputs.add(target);
+		}
+		synchronized (getLock(target == null ? path : target.getAbsolutePath())) {
+			final boolean exists = target != null && target.isFile();
+			if (exists && target.length() == content.length && sameContent(target, content)) {
+				skipped.increment();
+				return;
+			}
+			try (final OutputStream os = delegate.openStream(path)) {
+				os.write(content);
+			}
+			(exists ? written : created).increment();
+		}
+	}
+
+	private static Object getLock(final String key) {
+		return LOCKS[Math.floorMod(key.hashCode(), LOCKS.length)];
+	}
+
+	private static boolean sameContent(final File target, final byte[] content)
+			throws IOException {
+		final MessageDigest existing = getDigest();
+		try (final InputStream is = Files.newInputStream(target.toPath())) {
+			final byte[] buf = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = is.read(buf)) > 0) {
+				existing.update(buf, 0, read);
+			}
+		}
+		return MessageDigest.isEqual(existing.digest(), getDigest().digest(content));
+	}
+
+	private static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
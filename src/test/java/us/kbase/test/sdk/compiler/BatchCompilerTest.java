@@ -0,0 +1,70 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import us.kbase.sdk.compiler.BatchCompiler;
+import us.kbase.sdk.compiler.CachingIncludeProvider;
+
+public class BatchCompilerTest {
+
+	private static Map<Path, Path> specs(final String... names) {
+		final Map<Path, Path> specs = new LinkedHashMap<>();
+		for (final String n: names) {
+			specs.put(Paths.get("/specs", n + ".spec"), Paths.get("/out", n));
+		}
+		return specs;
+	}
+
+	@Test
+	public void testCompile() throws Exception {
+		final Set<Path> compiled = ConcurrentHashMap.newKeySet();
+		final Set<CachingIncludeProvider.SharedCache> caches = ConcurrentHashMap.newKeySet();
+		final List<BatchCompiler.Result> res = new BatchCompiler((spec, out, includes) -> {
+			caches.add(includes);
+			if (spec.toString().contains("bad")) {
+				throw new IllegalArgumentException("bad spec");
+			}
+			compiled.add(out);
+		}, 4).compile(specs("a", "bad", "c"));
+
+		assertThat("incorrect compiled", compiled,
+				is(Set.of(Paths.get("/out/a"), Paths.get("/out/c"))));
+		assertThat("include cache not shared", caches.size(), is(1));
+		assertThat("incorrect count", res.size(), is(3));
+		assertThat("incorrect spec", res.get(0).spec, is("/specs/a.spec"));
+		assertThat("incorrect out", res.get(0).outDir, is("/out/a"));
+		assertThat("incorrect success", res.get(0).success, is(true));
+		assertThat("incorrect error", res.get(0).error, is(nullValue()));
+		assertThat("incorrect spec", res.get(1).spec, is("/specs/bad.spec"));
+		assertThat("incorrect success", res.get(1).success, is(false));
+		assertThat("incorrect error", res.get(1).error, is("bad spec"));
+		assertThat("incorrect exception", res.get(1).exception.getClass(),
+				is((Object) IllegalArgumentException.class));
+		assertThat("incorrect spec", res.get(2).spec, is("/specs/c.spec"));
+		assertThat("incorrect success", res.get(2).success, is(true));
+	}
+
+	@Test
+	public void testCompileSingleSpecOnCallingThread() throws Exception {
+		final Thread caller = Thread.currentThread();
+		final List<BatchCompiler.Result> res = new BatchCompiler((spec, out, includes) -> {
+			if (Thread.currentThread() != caller) {
+				throw new IllegalStateException("wrong thread");
+			}
+		}, 4).compile(specs("a"));
+
+		assertThat("incorrect success", res.get(0).success, is(true));
+	}
+}
@@ -0,0 +1,85 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.kidl.KbService;
+import us.kbase.kidl.KidlParser;
+import us.kbase.sdk.compiler.CachingIncludeProvider;
+
+public class CachingIncludeProviderTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testDiamondInclude() throws Exception {
+		final String base = "module Base {\n    typedef int Id;\n};\n";
+		Files.writeString(tempDir.resolve("Base.spec"), base);
+		Files.writeString(tempDir.resolve("Left.spec"),
+				"#include <Base.spec>\nmodule Left {\n    typedef Base.Id LeftId;\n};\n");
+		Files.writeString(tempDir.resolve("Right.spec"),
+				"#include <Base.spec>\nmodule Right {\n    typedef Base.Id RightId;\n};\n");
+		final String main = "#include <Left.spec>\n#include <Right.spec>\n" +
+				"module Main {\n" +
+				"    typedef tuple<Left.LeftId, Right.RightId> Pair;\n" +
+				"    funcdef get(Pair p) returns (Pair) authentication required;\n" +
+				"};\n";
+		final CachingIncludeProvider ip = new CachingIncludeProvider(tempDir.toFile());
+
+		final List<KbService> services = KidlParser.parseSpec(
+				KidlParser.parseSpecInt(new StringReader(main), null, ip));
+
+		assertThat("incorrect module", services.get(0).getModules().get(0).getModuleName(),
+				is("Main"));
+		final String dir = tempDir.toFile().getCanonicalPath();
+		assertThat("incorrect includes", ip.getIncludePaths(), is(Arrays.asList(
+				dir + "/Left.spec", dir + "/Base.spec", dir + "/Right.spec")));
+		assertThat("incorrect name", ip.getFileName(dir + "/Base.spec"), is("Base.spec"));
+		assertThat("incorrect content", ip.getContent(dir + "/Base.spec"), is(base));
+	}
+
+	@Test
+	public void testSharedCache() throws Exception {
+		Files.writeString(tempDir.resolve("Base.spec"),
+				"module Base {\n    typedef int Id;\n};\n");
+		Files.writeString(tempDir.resolve("Mid.spec"),
+				"#include <Base.spec>\nmodule Mid {\n    typedef Base.Id MidId;\n};\n");
+		final CachingIncludeProvider.SharedCache shared =
+				new CachingIncludeProvider.SharedCache();
+		final CachingIncludeProvider ip1 =
+				new CachingIncludeProvider(tempDir.toFile(), shared);
+		final CachingIncludeProvider ip2 =
+				new CachingIncludeProvider(tempDir.toFile(), shared);
+
+		final String spec = "#include <Mid.spec>\n" +
+				"module %s {\n" +
+				"    funcdef get(Mid.MidId id) returns (Mid.MidId) authentication required;\n" +
+				"};\n";
+		KidlParser.parseSpec(KidlParser.parseSpecInt(
+				new StringReader(String.format(spec, "First")), null, ip1));
+		KidlParser.parseSpec(KidlParser.parseSpecInt(
+				new StringReader(String.format(spec, "Second")), null, ip2));
+
+		final String dir = tempDir.toFile().getCanonicalPath();
+		final List<String> expected = Arrays.asList(dir + "/Mid.spec", dir + "/Base.spec");
+		assertThat("incorrect includes", ip1.getIncludePaths(), is(expected));
+		assertThat("incorrect includes", ip2.getIncludePaths(), is(expected));
+		assertThat("content not shared", ip2.getContent(dir + "/Base.spec"),
+				is(sameInstance(ip1.getContent(dir + "/Base.spec"))));
+		// the parsed modules belong to each spec, as the parser may modify them
+		assertThat("modules shared", ip2.parseInclude("#include <Mid.spec>").get("Mid"),
+				is(not(sameInstance(ip1.parseInclude("#include <Mid.spec>").get("Mid")))));
+	}
+}
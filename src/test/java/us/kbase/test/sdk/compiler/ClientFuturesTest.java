@@ -0,0 +1,188 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.compileClient;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.auth.AuthToken;
+import us.kbase.common.service.RpcContext;
+import us.kbase.common.service.ServerException;
+import us.kbase.sdk.compiler.JavaClientOptions;
+
+public class ClientFuturesTest {
+
+	@TempDir
+	Path tempDir;
+
+	private FakeJsonRpcServer server;
+
+	@BeforeEach
+	public void startServer() throws Exception {
+		server = new FakeJsonRpcServer();
+	}
+
+	@AfterEach
+	public void stopServer() {
+		server.close();
+	}
+
+	@Test
+	public void testFutureMethods() throws Exception {
+		for (final boolean httpClient: List.of(false, true)) {
+			final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+					.withHttpClientTransport(httpClient).withFutureMethods(true).build(),
+					null);
+			final Class<?> clientClass = cl.loadClass("us.kbase.echo.EchoClient");
+			final Object client = clientClass.getConstructor(URL.class).newInstance(
+					server.getURL());
+			final Method echo = clientClass.getMethod(
+					"echoAsync", String.class, RpcContext[].class);
+			final List<CompletableFuture<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				futures.add((CompletableFuture<?>) echo.invoke(
+						client, "hi" + i, new RpcContext[0]));
+			}
+			final List<Object> results = new ArrayList<>();
+			for (final CompletableFuture<?> f: futures) {
+				results.add(f.get());
+			}
+			assertThat("incorrect results " + httpClient, results,
+					is(List.of("hi0", "hi1", "hi2", "hi3", "hi4")));
+
+			final CompletableFuture<?> fail = (CompletableFuture<?>) clientClass
+					.getMethod("failAsync", RpcContext[].class)
+					.invoke(client, (Object) new RpcContext[0]);
+			final ExecutionException e = assertThrows(ExecutionException.class, () -> fail.get());
+			final ServerException se = (ServerException) e.getCause();
+			assertThat("incorrect message " + httpClient, se.getMessage(), is("no luck"));
+			cl.close();
+		}
+	}
+
+	@Test
+	public void testFutureMethodsAsyncJob() throws Exception {
+		for (final boolean httpClient: List.of(false, true)) {
+			server.jobChecks.set(0);
+			final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+					.withHttpClientTransport(httpClient).withFutureMethods(true).build(),
+					"dev");
+			final Object client = asyncJobClient(cl, 10);
+			final CompletableFuture<?> f = (CompletableFuture<?>) client.getClass()
+					.getMethod("echoAsync", String.class, RpcContext[].class)
+					.invoke(client, "hi", new RpcContext[0]);
+			assertThat("incorrect result " + httpClient, f.get(), is("hi"));
+			assertThat("incorrect job checks " + httpClient, server.jobChecks.get(), is(3));
+
+			// the blocking method waits on the same poller
+			final Object res = client.getClass()
+					.getMethod("echo", String.class, RpcContext[].class)
+					.invoke(client, "hi2", new RpcContext[0]);
+			assertThat("incorrect result " + httpClient, res, is("hi2"));
+			assertThat("incorrect job checks " + httpClient, server.jobChecks.get(), is(6));
+			cl.close();
+		}
+	}
+
+	@Test
+	public void testFutureMethodsBatchJobChecks() throws Exception {
+		final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+				.withFutureMethods(true).build(), "dev");
+		final Object client = asyncJobClient(cl, 500);
+		setBatchJobChecks(client, true);
+		final List<Object> results = runJobs(client, 5);
+		assertThat("incorrect results", results, is(List.of("hi0", "hi1", "hi2", "hi3", "hi4")));
+		// the jobs finish on the third batch check, and then each job's result is fetched
+		assertThat("incorrect batch checks", server.batchJobChecks.get(), is(3));
+		assertThat("incorrect job checks", server.jobChecks.get(), is(5));
+		cl.close();
+	}
+
+	@Test
+	public void testFutureMethodsBatchJobChecksOffByDefault() throws Exception {
+		final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+				.withFutureMethods(true).build(), "dev");
+		final Object client = asyncJobClient(cl, 200);
+		assertThat("batch checks on", client.getClass().getMethod("isAsyncJobBatchChecks")
+				.invoke(client), is(false));
+		final List<Object> results = runJobs(client, 5);
+		assertThat("incorrect results", results, is(List.of("hi0", "hi1", "hi2", "hi3", "hi4")));
+		assertThat("incorrect batch checks", server.batchJobChecks.get(), is(0));
+		assertThat("incorrect job checks", server.jobChecks.get(), is(15));
+		cl.close();
+	}
+
+	@Test
+	public void testFutureMethodsBatchJobChecksFail() throws Exception {
+		// any error falls back to checking the jobs one at a time
+		for (final int code: List.of(-32601, -32000)) {
+			server.batchJobCheckError = code;
+			server.batchJobChecks.set(0);
+			server.jobChecks.set(0);
+			final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+					.withFutureMethods(true).build(), "dev");
+			final Object client = asyncJobClient(cl, 500);
+			setBatchJobChecks(client, true);
+			final List<Object> results = runJobs(client, 5);
+			assertThat("incorrect results " + code, results,
+					is(List.of("hi0", "hi1", "hi2", "hi3", "hi4")));
+			assertThat("incorrect batch checks " + code, server.batchJobChecks.get(), is(1));
+			assertThat("incorrect job checks " + code, server.jobChecks.get(), is(15));
+			assertThat("batch checks on " + code, client.getClass()
+					.getMethod("isAsyncJobBatchChecks").invoke(client), is(false));
+			cl.close();
+		}
+	}
+
+	private static void setBatchJobChecks(final Object client, final boolean enabled)
+			throws Exception {
+		client.getClass().getMethod("setAsyncJobBatchChecks", boolean.class)
+				.invoke(client, enabled);
+	}
+
+	private Object asyncJobClient(final URLClassLoader cl, final long checkTimeMs)
+			throws Exception {
+		final Class<?> clientClass = cl.loadClass("us.kbase.echo.EchoClient");
+		final Object client = clientClass.getConstructor(URL.class, AuthToken.class)
+				.newInstance(server.getURL(), new AuthToken("token", "user"));
+		clientClass.getMethod("setIsInsecureHttpConnectionAllowed", boolean.class)
+				.invoke(client, true);
+		clientClass.getMethod("setAsyncJobCheckTimeMs", long.class).invoke(client, checkTimeMs);
+		return client;
+	}
+
+	private List<Object> runJobs(final Object client, final int count) throws Exception {
+		final Method echo = client.getClass().getMethod(
+				"echoAsync", String.class, RpcContext[].class);
+		server.jobSubmits = new CountDownLatch(count);
+		try {
+			final List<CompletableFuture<?>> futures = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				futures.add((CompletableFuture<?>) echo.invoke(
+						client, "hi" + i, new RpcContext[0]));
+			}
+			final List<Object> results = new ArrayList<>();
+			for (final CompletableFuture<?> f: futures) {
+				results.add(f.get());
+			}
+			return results;
+		} finally {
+			server.jobSubmits = null;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.compiler.CompileManifest;
+import us.kbase.sdk.compiler.CompileOptions;
+import us.kbase.sdk.compiler.RunCompileCommand;
+
+public class CompileManifestTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testWriteCreatesDirectory() throws Exception {
+		final File outDir = tempDir.resolve("a/b").toFile();
+		final CompileManifest m = new CompileManifest();
+		m.fingerprint = "abc";
+		m.outputs.add("/foo");
+		m.write(outDir);
+
+		final CompileManifest got = CompileManifest.read(outDir);
+		assertThat("incorrect fingerprint", got.fingerprint, is("abc"));
+		assertThat("incorrect outputs", got.outputs, is(List.of("/foo")));
+	}
+
+	@Test
+	public void testIncrementalJavaOnlyOutsideOutDir() throws Exception {
+		final Path spec = tempDir.resolve("Foo.spec");
+		Files.writeString(spec, "module Foo {\n" +
+				"    funcdef get(string s) returns (string) authentication required;\n" +
+				"};\n");
+		final Path src = tempDir.resolve("src");
+		final File outDir = tempDir.resolve("out").toFile();
+		for (int i = 0; i < 2; i++) {
+			// only Java client code is generated, into a directory outside the output folder
+			RunCompileCommand.generate(spec.toFile(), null, false, null, false, null, null,
+					true, false, "us.kbase", src.toString(), outDir, null, null, null, false,
+					null, null, null, CompileOptions.getBuilder().withIncremental(true).build());
+
+			assertThat("missing client " + i,
+					Files.isRegularFile(src.resolve("us/kbase/foo/FooClient.java")), is(true));
+			final CompileManifest m = CompileManifest.read(outDir);
+			assertThat("missing manifest " + i, m == null, is(false));
+			assertThat("not up to date " + i, m.isUpToDate(m.fingerprint), is(true));
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package us.kbase.test.sdk.compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/** A JSON-RPC server for the clients generated from {@link JavaCodeTestUtils#CLIENT_SPEC}.
+ *
+ * Echo.echo and Echo.pair return their parameters, and any other method fails. Echo.echo can
+ * also be run as an asynchronous job, which finishes on the third check of its state. The
+ * fields record the requests that the clients sent and set how the server answers them.
+ */
+public class FakeJsonRpcServer implements AutoCloseable {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+	// job ID -> the job's input and the number of times the job's state was checked
+	private final Map<String, Object> jobInputs = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> jobStateChecks = new ConcurrentHashMap<>();
+	private final AtomicInteger jobIds = new AtomicInteger();
+	final AtomicInteger jobChecks = new AtomicInteger();
+	final AtomicInteger batchJobChecks = new AtomicInteger();
+	// the error code returned for batch job checks, or null to return the job states
+	volatile Integer batchJobCheckError = null;
+	// while set, job submissions aren't answered until the latch reaches zero, so the jobs
+	// are polled on the same schedule
+	volatile CountDownLatch jobSubmits = null;
+	final AtomicInteger batchRequests = new AtomicInteger();
+	volatile boolean batchRequestsSupported = true;
+	// while set, requests aren't answered until the latch is released
+	volatile CountDownLatch stallRelease = null;
+	// the spooled request files of streaming clients present while requests were handled
+	volatile boolean recordRequestFiles = false;
+	final Set<Path> requestFiles = ConcurrentHashMap.newKeySet();
+
+	/** Start the server on a free port.
+	 * @throws IOException if the server couldn't be started.
+	 */
+	public FakeJsonRpcServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::handle);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/** Get the URL of the server.
+	 * @return the URL.
+	 * @throws MalformedURLException if the URL couldn't be built.
+	 */
+	public URL getURL() throws MalformedURLException {
+		return new URL("http://localhost:" + server.getAddress().getPort());
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/** Get the request files that streaming clients have spooled to the temporary directory.
+	 * @return the request files.
+	 * @throws IOException if the temporary directory couldn't be listed.
+	 */
+	public static Set<Path> requestFiles() throws IOException {
+		try (final Stream<Path> files = Files.list(
+				Path.of(System.getProperty("java.io.tmpdir")))) {
+			return files.filter(f -> f.getFileName().toString().startsWith("kbase_rpc_request"))
+					.collect(Collectors.toSet());
+		}
+	}
+
+	private void handle(final HttpExchange ex) {
+		try {
+			final CountDownLatch stall = stallRelease;
+			if (stall != null) {
+				stall.await();
+			}
+			if (recordRequestFiles) {
+				requestFiles.addAll(requestFiles());
+			}
+			clientPorts.add(ex.getRemoteAddress().getPort());
+			final Object req = MAPPER.readValue(ex.getRequestBody(), Object.class);
+			final Object res;
+			if (req instanceof List && batchRequestsSupported) {
+				batchRequests.incrementAndGet();
+				final List<Object> responses = new ArrayList<>();
+				for (final Object r: (List<?>) req) {
+					responses.add(response(r));
+				}
+				// responses may be in any order
+				Collections.reverse(responses);
+				res = responses;
+			} else if (req instanceof List) {
+				batchRequests.incrementAndGet();
+				res = error(null, -32600, "Invalid request");
+			} else {
+				res = response(req);
+			}
+			final byte[] body = MAPPER.writeValueAsBytes(res);
+			ex.getResponseHeaders().add("Content-Type", "application/json");
+			ex.sendResponseHeaders(res instanceof Map && ((Map<?, ?>) res).containsKey("error") ?
+					500 : 200, body.length);
+			try (final OutputStream os = ex.getResponseBody()) {
+				os.write(body);
+			}
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		} finally {
+			ex.close();
+		}
+	}
+
+	private Map<String, Object> response(final Object request) throws InterruptedException {
+		@SuppressWarnings("unchecked")
+		final Map<String, Object> req = (Map<String, Object>) request;
+		final Object id = req.get("id");
+		final Object method = req.get("method");
+		final List<?> params = (List<?>) req.get("params");
+		if (method.equals("Echo.echo")) {
+			return result(id, params);
+		} else if (method.equals("Echo.pair") && params.get(0) instanceof List) {
+			// tuples must be sent as arrays
+			return result(id, params);
+		} else if (method.equals("Echo._echo_submit")) {
+			final String jobId = "job" + jobIds.getAndIncrement();
+			jobInputs.put(jobId, params.get(0));
+			jobStateChecks.put(jobId, new AtomicInteger());
+			final CountDownLatch submits = jobSubmits;
+			if (submits != null) {
+				submits.countDown();
+				submits.await();
+			}
+			return result(id, List.of(jobId));
+		} else if (method.equals("Echo._check_job")) {
+			jobChecks.incrementAndGet();
+			return result(id, List.of(jobState((String) params.get(0))));
+		} else if (method.equals("Echo._check_jobs") && batchJobCheckError == null) {
+			batchJobChecks.incrementAndGet();
+			final List<Object> states = new ArrayList<>();
+			for (final Object jobId: (List<?>) params.get(0)) {
+				states.add(jobState((String) jobId));
+			}
+			return result(id, List.of(states));
+		} else if (method.equals("Echo._check_jobs")) {
+			batchJobChecks.incrementAndGet();
+			return error(id, batchJobCheckError, "Can not check jobs");
+		} else {
+			return error(id, -32000, "no luck");
+		}
+	}
+
+	private static Map<String, Object> result(final Object id, final Object result) {
+		return Map.of("version", "1.1", "id", id, "result", result);
+	}
+
+	private static Map<String, Object> error(final Object id, final int code, final String msg) {
+		final Map<String, Object> res = new HashMap<>();
+		res.put("version", "1.1");
+		res.put("id", id);
+		res.put("error", Map.of(
+				"name", "JSONRPCError", "code", code, "message", msg, "error", "traceback"));
+		return res;
+	}
+
+	// jobs finish on the third check of their state
+	private Map<String, Object> jobState(final String jobId) {
+		return jobStateChecks.get(jobId).incrementAndGet() < 3 ?
+				Map.of("finished", 0) :
+				Map.of("finished", 1, "result", List.of(jobInputs.get(jobId)));
+	}
+}
@@ -1,4 +1,4 @@
-package us.kbase.sdk.compiler;
+package us.kbase.test.sdk.compiler;
 
 import static org.apache.commons.lang3.StringUtils.stripEnd;
 import static org.apache.commons.lang3.StringUtils.substringAfter;
@@ -8,8 +8,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -23,30 +23,43 @@ import com.googlecode.jsonschema2pojo.SchemaStore;
 /**
  * This class was built based on com.googlecode.jsonschema2pojo.Schema source code
  * with some changes required for keeping schema files entirely in JVM memory.
+ *
+ * Lookups of schemas that are already in the store don't lock, so the store can be shared
+ * between threads.
  */
 public class InMemorySchemaStore extends SchemaStore {
-    private Map<URI, Schema> schemas = new HashMap<URI, Schema>();
-    private FragmentResolver fragmentResolver = new FragmentResolver();
-    private ContentResolver contentResolver = new ContentResolver();
-    private static final ObjectMapper OBJECT_MAPPER = 
+    private final ConcurrentMap<URI, Schema> schemas = new ConcurrentHashMap<URI, Schema>();
+    private final FragmentResolver fragmentResolver = new FragmentResolver();
+    private final ContentResolver contentResolver = new ContentResolver();
+    private static final ObjectMapper OBJECT_MAPPER =
             new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
 
-    public synchronized Schema create(URI id) {
-        if (!schemas.containsKey(id)) {
-            JsonNode content = contentResolver.resolve(removeFragment(id));
-            if (id.toString().contains("#")) {
-                content = fragmentResolver.resolve(content, '#' + substringAfter(id.toString(), "#"));
-            }
-            schemas.put(id, new InMemorySchema(id, content));
+    public Schema create(URI id) {
+        Schema schema = schemas.get(id);
+        if (schema != null) {
+            return schema;
         }
-        return schemas.get(id);
+        return schemas.computeIfAbsent(id, key -> {
+            JsonNode content = contentResolver.resolve(removeFragment(key));
+            if (key.toString().contains("#")) {
+                content = fragmentResolver.resolve(content, '#' + substringAfter(key.toString(), "#"));
+            }
+            return new InMemorySchema(key, content);
+        });
     }
 
     public void addSchema(URI id, InputStream is) {
-        JsonNode content = resolveFromStream(id, is);
+        addSchema(id, resolveFromStream(id, is));
+    }
+
+    /** Add an already parsed schema to the store.
+     * @param id the ID of the schema.
+     * @param content the schema.
+     */
+    public void addSchema(URI id, JsonNode content) {
         schemas.put(id, new InMemorySchema(id, content));
     }
-    
+
     public JsonNode resolveFromStream(URI id, InputStream is) {
         try {
             return OBJECT_MAPPER.readTree(is);
@@ -73,7 +86,7 @@ public class InMemorySchemaStore extends SchemaStore {
         return create(id);
     }
 
-    public synchronized void clearCache() {
+    public void clearCache() {
         schemas.clear();
     }
 
@@ -0,0 +1,329 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.servlet.http.HttpServlet;
+import javax.tools.ToolProvider;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.kidl.KbService;
+import us.kbase.kidl.KidlParser;
+import us.kbase.sdk.compiler.CachingIncludeProvider;
+import us.kbase.sdk.compiler.CompileOptions;
+import us.kbase.sdk.compiler.JavaClientOptions;
+import us.kbase.sdk.compiler.JavaServerOptions;
+import us.kbase.sdk.compiler.JavaSupportClass;
+import us.kbase.sdk.compiler.JavaTypeGenerator;
+import us.kbase.sdk.compiler.PrevCodeParser;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+/** Generates Java clients and servers for the test specs and compiles them in process with
+ * the test classpath, so the tests can run the generated code and its support classes.
+ */
+public class JavaCodeTestUtils {
+
+	/** A module whose clients are served by {@link FakeJsonRpcServer}. */
+	public static final String CLIENT_SPEC = """
+			module Echo {
+			    funcdef echo(string s) returns (string) authentication none;
+			    funcdef fail() returns () authentication none;
+			    funcdef pair(tuple<string, int> p) returns (tuple<string, int>)
+			        authentication none;
+			};
+			""";
+
+	/** A module whose generated server echoes its input. Calls of the wait method are limited
+	 * to one at a time and block while calls are held, see {@link #holdServerCalls()}.
+	 */
+	public static final String SERVER_SPEC = """
+			module Slow {
+			    /* Waits until the test releases it.
+			       @concurrency 1 */
+			    funcdef wait(string s) returns (string) authentication none;
+			    funcdef echo(string s) returns (string) authentication none;
+			};
+			""";
+
+	/** A module whose generated server sums streamed list parameters. */
+	public static final String STREAMING_SPEC = """
+			module Slow {
+			    /* Sums the values of a in the items.
+			       @streaming items */
+			    funcdef sum(string name, list<mapping<string, int>> items, int offset)
+			        returns (int) authentication none;
+
+			    /* Sums the counts of the pairs.
+			       @streaming pairs */
+			    funcdef sum_pairs(list<tuple<string, int>> pairs)
+			        returns (int) authentication none;
+			};
+			""";
+
+	/** The path of the generated client for {@link #CLIENT_SPEC}. */
+	public static final String CLIENT_PATH = "us/kbase/echo/EchoClient.java";
+
+	/** The path of the generated server for {@link #SERVER_SPEC} and
+	 * {@link #STREAMING_SPEC}.
+	 */
+	public static final String SERVER_PATH = "us/kbase/slow/SlowServer.java";
+
+	public static final ObjectMapper MAPPER = new ObjectMapper();
+
+	// used by the wait method of the generated server
+	private static volatile CountDownLatch serverCallStarted;
+	private static volatile CountDownLatch serverCallRelease;
+
+	private JavaCodeTestUtils() {}
+
+	/** Called by the wait method of the generated server. Blocks until the calls are released
+	 * if calls are held.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public static void waitForRelease() throws InterruptedException {
+		serverCallStarted.countDown();
+		serverCallRelease.await();
+	}
+
+	/** Make the next call of the wait method of the generated server block until
+	 * {@link #releaseServerCalls()} is called.
+	 */
+	public static void holdServerCalls() {
+		serverCallStarted = new CountDownLatch(1);
+		serverCallRelease = new CountDownLatch(1);
+	}
+
+	/** Wait until a held call of the wait method has started.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public static void awaitServerCall() throws InterruptedException {
+		serverCallStarted.await();
+	}
+
+	/** Release the held calls of the wait method. */
+	public static void releaseServerCalls() {
+		serverCallRelease.countDown();
+	}
+
+	/** Generate the client for {@link #CLIENT_SPEC}.
+	 * @param tempDir a directory for the include provider.
+	 * @param opts the client options.
+	 * @param asyncVersion the version of the asynchronous job service, or null for a
+	 * synchronous client.
+	 * @return the generated files.
+	 * @throws Exception if the client couldn't be generated.
+	 */
+	public static InMemoryFileSaver generateClient(
+			final Path tempDir,
+			final JavaClientOptions opts,
+			final String asyncVersion)
+			throws Exception {
+		final InMemoryFileSaver out = new InMemoryFileSaver();
+		JavaTypeGenerator.processSpec(parse(tempDir, CLIENT_SPEC), out, "us.kbase", false, null,
+				asyncVersion, null, "0.1.0", "", "", null, null,
+				CompileOptions.getBuilder().withJavaClientOptions(opts).build());
+		return out;
+	}
+
+	/** Generate and compile the client for {@link #CLIENT_SPEC} with the support classes that
+	 * the options require.
+	 * @param tempDir a directory for the include provider and the compiled code.
+	 * @param opts the client options.
+	 * @param asyncVersion the version of the asynchronous job service, or null for a
+	 * synchronous client.
+	 * @return a class loader for the compiled client.
+	 * @throws Exception if the client couldn't be generated or compiled.
+	 */
+	public static URLClassLoader compileClient(
+			final Path tempDir,
+			final JavaClientOptions opts,
+			final String asyncVersion)
+			throws Exception {
+		final InMemoryFileSaver out = generateClient(tempDir, opts, asyncVersion);
+		final List<String> paths = new ArrayList<>(List.of(CLIENT_PATH));
+		if (opts.isHttpClientTransport()) {
+			paths.add(JavaSupportClass.POOLED_CALLER.getPath());
+		}
+		if (opts.isFutureMethods()) {
+			paths.add(JavaSupportClass.CLIENT_FUTURES.getPath());
+		}
+		if (opts.isBatchCalls()) {
+			paths.add(JavaSupportClass.BATCH.getPath());
+		}
+		return compile(tempDir, out, paths);
+	}
+
+	/** Generate the server for a spec, with implementations of the methods of
+	 * {@link #SERVER_SPEC} and {@link #STREAMING_SPEC}.
+	 * @param tempDir a directory for the include provider.
+	 * @param spec the spec.
+	 * @param opts the server options.
+	 * @return the generated files.
+	 * @throws Exception if the server couldn't be generated.
+	 */
+	public static InMemoryFileSaver generateServer(
+			final Path tempDir,
+			final String spec,
+			final JavaServerOptions opts)
+			throws Exception {
+		final Map<String, String> code = new HashMap<>(Map.of(
+				PrevCodeParser.HEADER, "", PrevCodeParser.CLSHEADER, "",
+				PrevCodeParser.CONSTRUCTOR, "",
+				PrevCodeParser.METHOD + "echo", "        returnVal = s;",
+				PrevCodeParser.METHOD + "sum", "        returnVal = offset;\n" +
+						"        for (java.util.Map<String, Long> item : items) {\n" +
+						"            returnVal += item.get(\"a\");\n" +
+						"        }",
+				PrevCodeParser.METHOD + "sum_pairs", "        returnVal = 0L;\n" +
+						"        for (us.kbase.common.service.Tuple2<String, Long> p : pairs) {\n" +
+						"            returnVal += p.getE2();\n" +
+						"        }",
+				PrevCodeParser.METHOD + "wait", "        returnVal = s;\n        " +
+						JavaCodeTestUtils.class.getName() + ".waitForRelease();"));
+		final InMemoryFileSaver out = new InMemoryFileSaver();
+		JavaTypeGenerator.processSpec(parse(tempDir, spec), out, "us.kbase", true, null, null,
+				null, "0.1.0", "", "", code, null,
+				CompileOptions.getBuilder().withJavaServerOptions(opts).build());
+		return out;
+	}
+
+	private static List<KbService> parse(final Path tempDir, final String spec)
+			throws Exception {
+		return KidlParser.parseSpec(KidlParser.parseSpecInt(
+				new StringReader(spec), null, new CachingIncludeProvider(tempDir.toFile())));
+	}
+
+	/** Get the paths of the server and the support classes generated with it.
+	 * @param out the generated files.
+	 * @return the paths.
+	 */
+	public static List<String> serverPaths(final InMemoryFileSaver out) {
+		final List<String> paths = new ArrayList<>(List.of(SERVER_PATH));
+		for (final JavaSupportClass c: JavaSupportClass.values()) {
+			if (out.getFiles().containsKey(c.getPath())) {
+				paths.add(c.getPath());
+			}
+		}
+		return paths;
+	}
+
+	/** Compile the generated server and run it in a Jetty server on a free port.
+	 * @param tempDir a directory for the compiled code.
+	 * @param out the generated files.
+	 * @return the started Jetty server.
+	 * @throws Exception if the server couldn't be compiled or started.
+	 */
+	public static Server startServer(final Path tempDir, final InMemoryFileSaver out)
+			throws Exception {
+		final HttpServlet servlet = (HttpServlet) compile(tempDir, out, serverPaths(out))
+				.loadClass("us.kbase.slow.SlowServer").getConstructor().newInstance();
+		final Server jetty = new Server(0);
+		final ServletContextHandler context =
+				new ServletContextHandler(ServletContextHandler.SESSIONS);
+		context.setContextPath("/");
+		jetty.setHandler(context);
+		context.addServlet(new ServletHolder(servlet), "/*");
+		jetty.start();
+		return jetty;
+	}
+
+	/** Get the URL of a Jetty server started by {@link #startServer(Path, InMemoryFileSaver)}.
+	 * @param jetty the server.
+	 * @return the URL.
+	 * @throws Exception if the URL couldn't be built.
+	 */
+	public static URL getURL(final Server jetty) throws Exception {
+		return new URL("http://localhost:" + jetty.getConnectors()[0].getLocalPort());
+	}
+
+	/** Build a JSON-RPC request with the single parameter "hi".
+	 * @param url the URL of the server.
+	 * @param method the method to call.
+	 * @param id the ID of the request.
+	 * @return the request.
+	 * @throws Exception if the request couldn't be built.
+	 */
+	public static HttpRequest rpcRequest(final URL url, final String method, final String id)
+			throws Exception {
+		return rpcRequest(url, method, id, List.of("hi"));
+	}
+
+	/** Build a JSON-RPC request.
+	 * @param url the URL of the server.
+	 * @param method the method to call.
+	 * @param id the ID of the request.
+	 * @param params the parameters of the call.
+	 * @return the request.
+	 * @throws Exception if the request couldn't be built.
+	 */
+	public static HttpRequest rpcRequest(
+			final URL url,
+			final String method,
+			final String id,
+			final List<?> params)
+			throws Exception {
+		final byte[] body = MAPPER.writeValueAsBytes(Map.of("version", "1.1", "id", id,
+				"method", method, "params", params));
+		return HttpRequest.newBuilder(url.toURI())
+				.POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+	}
+
+	/** Assert that exactly the given support classes were generated.
+	 * @param out the generated files.
+	 * @param expected the expected support classes.
+	 */
+	public static void assertSupportClasses(
+			final InMemoryFileSaver out,
+			final JavaSupportClass... expected) {
+		for (final JavaSupportClass c: JavaSupportClass.values()) {
+			assertThat("incorrect support class generation " + c,
+					out.getFiles().containsKey(c.getPath()), is(List.of(expected).contains(c)));
+		}
+	}
+
+	/** Compile generated files with the test classpath.
+	 * @param tempDir a directory for the source and compiled code.
+	 * @param out the generated files.
+	 * @param paths the paths of the files to compile.
+	 * @return a class loader for the compiled code.
+	 * @throws Exception if the files couldn't be compiled.
+	 */
+	public static URLClassLoader compile(
+			final Path tempDir,
+			final InMemoryFileSaver out,
+			final List<String> paths)
+			throws Exception {
+		final Path src = Files.createTempDirectory(tempDir, "src");
+		final Path classes = Files.createTempDirectory(tempDir, "classes");
+		final List<String> args = new ArrayList<>(List.of(
+				"-cp", System.getProperty("java.class.path"), "-d", classes.toString()));
+		for (final String path: paths) {
+			final Path p = src.resolve(path);
+			Files.createDirectories(p.getParent());
+			Files.write(p, out.getFiles().get(path));
+			args.add(p.toString());
+		}
+		final int res = ToolProvider.getSystemJavaCompiler().run(
+				null, null, null, args.toArray(new String[0]));
+		assertThat("compile failed", res, is(0));
+		return new URLClassLoader(new URL[] {classes.toUri().toURL()},
+				JavaCodeTestUtils.class.getClassLoader());
+	}
+}
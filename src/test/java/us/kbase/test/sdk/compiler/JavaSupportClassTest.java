@@ -0,0 +1,65 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.compiler.JavaSupportClass;
+import us.kbase.sdk.compiler.JavaSupportClass.ServerFeature;
+import us.kbase.sdk.util.DiskFileSaver;
+
+public class JavaSupportClassTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testSource() throws Exception {
+		for (final JavaSupportClass c: JavaSupportClass.values()) {
+			final String src = c.getSource();
+			assertThat("incorrect package " + c,
+					src.startsWith("package us.kbase.common.service;\n"), is(true));
+			final String decl = c == JavaSupportClass.METHOD_LIMITS ? "@interface " : "class ";
+			assertThat("incorrect class " + c, src,
+					containsString(decl + c.getClassName() + " "));
+			assertThat("unrendered template " + c, src, not(containsString("${")));
+			assertThat("incorrect path " + c, c.getPath(),
+					is("us/kbase/common/service/" + c.getClassName() + ".java"));
+		}
+		final String all = JavaSupportClass.LIMITED_SERVLET.getSource(EnumSet.of(
+				ServerFeature.METHOD_LIMITS, ServerFeature.METRICS, ServerFeature.STREAMING));
+		for (final JavaSupportClass c: List.of(JavaSupportClass.METHOD_LIMITS,
+				JavaSupportClass.METRICS, JavaSupportClass.STREAMING_LIST)) {
+			assertThat("missing reference " + c, all, containsString(c.getClassName()));
+			assertThat("unused reference " + c, JavaSupportClass.LIMITED_SERVLET.getSource(),
+					not(containsString(c.getClassName())));
+		}
+		assertThat("incorrect class name", JavaSupportClass.POOLED_CALLER.getFullClassName(),
+				is("us.kbase.common.service.PooledJsonClientCaller"));
+		assertThat("incorrect class name", JavaSupportClass.CLIENT_FUTURES.getFullClassName(),
+				is("us.kbase.common.service.ClientFutures"));
+	}
+
+	@Test
+	public void testWriteSkipsIdenticalFile() throws Exception {
+		final DiskFileSaver fs = new DiskFileSaver(tempDir.toFile());
+		for (final JavaSupportClass c: JavaSupportClass.values()) {
+			assertThat("not written " + c, c.write(fs), is(true));
+			final Path p = tempDir.resolve(c.getPath());
+			final FileTime old = FileTime.fromMillis(1000000000000L);
+			Files.setLastModifiedTime(p, old);
+			assertThat("written " + c, c.write(fs), is(false));
+			assertThat("file was rewritten " + c, Files.getLastModifiedTime(p), is(old));
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.CLIENT_PATH;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.compileClient;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.generateClient;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.common.service.RpcContext;
+import us.kbase.common.service.ServerException;
+import us.kbase.common.service.Tuple2;
+import us.kbase.sdk.compiler.JavaClientOptions;
+import us.kbase.sdk.compiler.JavaSupportClass;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+public class JsonRpcBatchTest {
+
+	@TempDir
+	Path tempDir;
+
+	private FakeJsonRpcServer server;
+
+	@BeforeEach
+	public void startServer() throws Exception {
+		server = new FakeJsonRpcServer();
+	}
+
+	@AfterEach
+	public void stopServer() {
+		server.close();
+	}
+
+	@Test
+	public void testBatch() throws Exception {
+		for (final boolean httpClient: List.of(false, true)) {
+			for (final boolean supported: List.of(true, false)) {
+				server.batchRequestsSupported = supported;
+				server.batchRequests.set(0);
+				final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+						.withHttpClientTransport(httpClient).withBatchCalls(true).build(), null);
+				final Class<?> clientClass = cl.loadClass("us.kbase.echo.EchoClient");
+				final Object client = clientClass.getConstructor(URL.class).newInstance(
+						server.getURL());
+				final String msg = "httpClient " + httpClient + " supported " + supported;
+				// the second batch skips the batch request if the server rejected the first
+				for (int b = 0; b < 2; b++) {
+					final Object batch = clientClass.getMethod("newBatch").invoke(client);
+					final Method echo = batch.getClass().getMethod(
+							"echo", String.class, RpcContext[].class);
+					final List<Object> results = new ArrayList<>();
+					for (int i = 0; i < 5; i++) {
+						results.add(echo.invoke(batch, "hi" + i, new RpcContext[0]));
+					}
+					final Object fail = batch.getClass().getMethod("fail", RpcContext[].class)
+							.invoke(batch, (Object) new RpcContext[0]);
+					final Object pair = batch.getClass()
+							.getMethod("pair", Tuple2.class, RpcContext[].class)
+							.invoke(batch, new Tuple2<String, Long>().withE1("a").withE2(1L),
+									new RpcContext[0]);
+					final Method get = fail.getClass().getMethod("get");
+					assertThrows(IllegalStateException.class, () -> invoke(get, fail));
+					batch.getClass().getMethod("execute").invoke(batch);
+
+					final List<Object> values = new ArrayList<>();
+					for (final Object r: results) {
+						values.add(get.invoke(r));
+					}
+					assertThat("incorrect results " + msg, values,
+							is(List.of("hi0", "hi1", "hi2", "hi3", "hi4")));
+					final ServerException se = (ServerException) assertThrows(
+							InvocationTargetException.class, () -> get.invoke(fail)).getCause();
+					assertThat("incorrect message " + msg, se.getMessage(), is("no luck"));
+					final Tuple2<?, ?> t = (Tuple2<?, ?>) get.invoke(pair);
+					assertThat("incorrect tuple " + msg, List.of(t.getE1(), t.getE2()),
+							is(List.of("a", 1L)));
+				}
+				assertThat("incorrect batch requests " + msg, server.batchRequests.get(),
+						is(supported ? 2 : 1));
+				cl.close();
+			}
+		}
+	}
+
+	@Test
+	public void testBatchReadTimeout() throws Exception {
+		for (final boolean httpClient: List.of(false, true)) {
+			final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+					.withHttpClientTransport(httpClient).withBatchCalls(true).build(), null);
+			final Class<?> clientClass = cl.loadClass("us.kbase.echo.EchoClient");
+			final Object client = clientClass.getConstructor(URL.class).newInstance(
+					server.getURL());
+			clientClass.getMethod("setConnectionReadTimeOut", Integer.class).invoke(client, 200);
+			final Object batch = clientClass.getMethod("newBatch").invoke(client);
+			final Method echo = batch.getClass().getMethod(
+					"echo", String.class, RpcContext[].class);
+			echo.invoke(batch, "hi0", new RpcContext[0]);
+			echo.invoke(batch, "hi1", new RpcContext[0]);
+			final Method execute = batch.getClass().getMethod("execute");
+			final CountDownLatch release = new CountDownLatch(1);
+			server.stallRelease = release;
+			try {
+				final InvocationTargetException e = assertThrows(
+						InvocationTargetException.class, () -> execute.invoke(batch));
+				assertThat("incorrect exception " + httpClient + " " + e.getCause(),
+						e.getCause() instanceof HttpTimeoutException, is(true));
+			} finally {
+				server.stallRelease = null;
+				release.countDown();
+			}
+			cl.close();
+		}
+	}
+
+	private static Object invoke(final Method m, final Object o) throws Throwable {
+		try {
+			return m.invoke(o);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Test
+	public void testBatchNotGeneratedForAsyncClient() throws Exception {
+		final InMemoryFileSaver out = generateClient(tempDir, JavaClientOptions.getBuilder()
+				.withBatchCalls(true).build(), "dev");
+		assertThat("batch class generated",
+				out.getFiles().containsKey(JavaSupportClass.BATCH.getPath()), is(false));
+		assertThat("batch generated", new String(out.getFiles().get(CLIENT_PATH)),
+				not(containsString("newBatch")));
+	}
+}
@@ -0,0 +1,220 @@
+package us.kbase.test.sdk.compiler;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.googlecode.jsonschema2pojo.DefaultGenerationConfig;
+import com.googlecode.jsonschema2pojo.Jackson2Annotator;
+import com.googlecode.jsonschema2pojo.Schema;
+import com.googlecode.jsonschema2pojo.SchemaGenerator;
+import com.googlecode.jsonschema2pojo.SchemaMapper;
+import com.googlecode.jsonschema2pojo.rules.Rule;
+import com.googlecode.jsonschema2pojo.rules.RuleFactory;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JPackage;
+import com.sun.codemodel.JType;
+
+import us.kbase.kidl.KbList;
+import us.kbase.kidl.KbMapping;
+import us.kbase.kidl.KbScalar;
+import us.kbase.kidl.KbStruct;
+import us.kbase.kidl.KbTuple;
+import us.kbase.kidl.KbUnspecifiedObject;
+import us.kbase.kidl.KidlParseException;
+import us.kbase.sdk.compiler.JavaData;
+import us.kbase.sdk.compiler.JavaType;
+import us.kbase.sdk.compiler.JavaTypeGenerator;
+import us.kbase.sdk.compiler.PojoGenerator;
+import us.kbase.sdk.compiler.Utils;
+
+/** Generates POJOs by building a JSON schema for each type and running the schemas through
+ * jsonschema2pojo. This is how the compiler generated POJOs before {@link PojoGenerator}, and
+ * is kept as the reference that the output of that generator is checked against.
+ */
+public class JsonSchemaPojoGenerator {
+
+	private static final char[] WORD_DELIMITERS = {'_', '-'};
+	private static final String UTIL_PACKAGE = "us.kbase.common.service";
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private JsonSchemaPojoGenerator() {}
+
+	/** Generate the POJOs for a parsed spec.
+	 * @param data the parsed spec. Any tuple arities the POJOs use are added to the tuple types.
+	 * @param packageParent the parent package of the module packages.
+	 * @return the code model containing the POJOs.
+	 * @throws Exception if the POJOs couldn't be generated.
+	 */
+	public static JCodeModel generate(final JavaData data, String packageParent)
+			throws Exception {
+		if (packageParent.equals(".")) {  // Special value meaning top level package.
+			packageParent = "";
+		}
+		final InMemorySchemaStore ss = new InMemorySchemaStore();
+		for (final JavaType type : data.getTypes()) {
+			final URI id = new URI("file:/" + type.getModuleName() + "/" +
+					type.getJavaClassName() + ".json");
+			ss.addSchema(id, MAPPER.valueToTree(
+					createJsonSchemaTree(packageParent, type, data.getTupleTypes())));
+		}
+		JCodeModel codeModel = new JCodeModel();
+		DefaultGenerationConfig cfg = new DefaultGenerationConfig() {
+			@Override
+			public char[] getPropertyWordDelimiters() {
+				return WORD_DELIMITERS;
+			}
+			@Override
+			public boolean isIncludeHashcodeAndEquals() {
+				return false;
+			}
+			@Override
+			public boolean isIncludeToString() {
+				return false;
+			}
+			@Override
+			public boolean isIncludeJsr303Annotations() {
+				return false;
+			}
+			@Override
+			public boolean isGenerateBuilders() {
+				return true;
+			}
+			@Override
+			public boolean isUseLongIntegers() {
+				return true;
+			}
+		};
+		RuleFactory rf = new RuleFactory(cfg, new Jackson2Annotator(), ss) {
+			@Override
+			public Rule<JPackage, JType> getObjectRule() {
+				return new JsonSchemaToPojoCustomObjectRule(this) {
+					@Override
+					public JType apply(String nodeName, JsonNode node,
+							JPackage _package, Schema schema) {
+						JType jclass = super.apply(nodeName, node, _package, schema);
+						if (jclass instanceof JDefinedClass) {
+							PojoGenerator.addToString((JDefinedClass)jclass);
+						}
+						return jclass;
+					}
+				};
+			}
+			
+			@Override
+			public Rule<JFieldVar, JFieldVar> getDefaultRule() {
+				return new Rule<JFieldVar, JFieldVar>() {
+					@Override
+					public JFieldVar apply(String nodeName, JsonNode node,
+							JFieldVar field, Schema currentSchema) {
+						return field;
+					}
+				};
+			}
+		};
+		SchemaGenerator sg = new SchemaGenerator();
+		SchemaMapper sm = new SchemaMapper(rf, sg);
+		for (JavaType type : data.getTypes()) {
+			URL source = new URL("file:/" + type.getModuleName() + "/" + type.getJavaClassName() + ".json");
+			sm.generate(codeModel, type.getJavaClassName(), "", source);
+		}
+		return codeModel;
+	}
+
+	private static LinkedHashMap<String, Object> createJsonSchemaTree(String packageParent,
+			JavaType type, Set<Integer> tupleTypes) throws Exception {
+		LinkedHashMap<String, Object> tree = new LinkedHashMap<String, Object>();
+		tree.put("$schema", "http://json-schema.org/draft-04/schema#");
+		tree.put("id", type.getModuleName() + "." + type.getJavaClassName());
+		StringBuilder descr = new StringBuilder("<p>Original spec-file type: ").append(type.getOriginalTypeName()).append("</p>\n");
+		List<String> descrLines = new ArrayList<String>();
+		if (type.getAliasHistoryOuterToDeep().size() > 0) {
+			descrLines.addAll(Utils.parseCommentLines(type.getAliasHistoryOuterToDeep().get(0).getComment()));
+			if (descrLines.size() > 0) {
+				descr.append("<pre>\n");
+				for (String l : descrLines) {
+					descr.append(l).append("\n");
+				}
+				descr.append("</pre>");
+			}
+		}
+		tree.put("description", descr.toString());
+		tree.put("type", "object");
+		tree.put("javaType", JavaTypeGenerator.sub(packageParent, type.getModuleName()) + "." + type.getJavaClassName());
+		if (type.getMainType() instanceof KbStruct) {
+			LinkedHashMap<String, Object> props = new LinkedHashMap<String, Object>();
+			for (int itemPos = 0; itemPos < type.getInternalTypes().size(); itemPos++) {
+				JavaType iType = type.getInternalTypes().get(itemPos);
+				String field = type.getInternalFields().get(itemPos);
+				props.put(field, createJsonRefTypeTree(type.getModuleName(), iType, 
+						type.getInternalComment(itemPos), false, packageParent, tupleTypes));
+			}
+			tree.put("properties", props);
+			tree.put("additionalProperties", true);
+		} else {
+			throw new KidlParseException("Type " + type.getMainType().getClass().getSimpleName() + " is not " +
+					"supported for POJO generation");
+		}
+		return tree;
+	}
+
+	private static LinkedHashMap<String, Object> createJsonRefTypeTree(String module, JavaType type, String comment, 
+			boolean insideTypeParam, String packageParent, Set<Integer> tupleTypes) {
+		LinkedHashMap<String, Object> typeTree = new LinkedHashMap<String, Object>();
+		if (comment != null && comment.trim().length() > 0)
+			typeTree.put("description", comment);
+		if (type.needClassGeneration()) {
+			if (insideTypeParam) {
+				typeTree.put("type", "object");
+				typeTree.put("javaType", JavaTypeGenerator.sub(packageParent, type.getModuleName()) + "." + type.getJavaClassName());
+			} else {
+				String modulePrefix = type.getModuleName().equals(module) ? "" : ("../" + type.getModuleName() + "/");
+				typeTree.put("$ref", modulePrefix + type.getJavaClassName() + ".json");
+			}
+		} else if (type.getMainType() instanceof KbScalar) {
+			if (insideTypeParam) {
+				typeTree.put("type", "object");
+				typeTree.put("javaType", ((KbScalar)type.getMainType()).getJavaStyleName());
+			} else {
+				typeTree.put("type", ((KbScalar)type.getMainType()).getJsonStyleName());
+			}
+		} else if (type.getMainType() instanceof KbList) {
+			LinkedHashMap<String, Object> subType = createJsonRefTypeTree(module, type.getInternalTypes().get(0), null, 
+					true, packageParent, tupleTypes);
+				typeTree.put("type", "object");
+				typeTree.put("javaType", "java.util.List");
+				typeTree.put("javaTypeParams", subType);
+		} else if (type.getMainType() instanceof KbMapping) {
+			typeTree.put("type", "object");
+			typeTree.put("javaType", "java.util.Map");
+			List<LinkedHashMap<String, Object>> subList = new ArrayList<LinkedHashMap<String, Object>>();
+			for (JavaType iType : type.getInternalTypes())
+				subList.add(createJsonRefTypeTree(module, iType, null, true, packageParent, tupleTypes));
+			typeTree.put("javaTypeParams", subList);
+		} else if (type.getMainType() instanceof KbTuple) {
+			typeTree.put("type", "object");
+			int tupleType = type.getInternalTypes().size();
+			if (tupleType < 1)
+				throw new IllegalStateException("Wrong count of tuple parameters: " + tupleType);
+			typeTree.put("javaType", UTIL_PACKAGE + ".Tuple" + tupleType);
+			tupleTypes.add(tupleType);
+			List<LinkedHashMap<String, Object>> subList = new ArrayList<LinkedHashMap<String, Object>>();
+			for (JavaType iType : type.getInternalTypes())
+				subList.add(createJsonRefTypeTree(module, iType, null, true, packageParent, tupleTypes));
+			typeTree.put("javaTypeParams", subList);
+		} else if (type.getMainType() instanceof KbUnspecifiedObject) {
+			typeTree.put("type", "object");
+			typeTree.put("javaType", UTIL_PACKAGE + ".UObject");
+		} else {
+			throw new IllegalStateException("Unknown type: " + type.getMainType().getClass().getName());
+		}
+		return typeTree;
+	}
+}
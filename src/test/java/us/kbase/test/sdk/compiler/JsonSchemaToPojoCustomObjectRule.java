@@ -1,4 +1,4 @@
-package us.kbase.sdk.compiler;
+package us.kbase.test.sdk.compiler;
 
 import static com.googlecode.jsonschema2pojo.rules.PrimitiveTypes.isPrimitive;
 import static com.googlecode.jsonschema2pojo.rules.PrimitiveTypes.primitiveType;
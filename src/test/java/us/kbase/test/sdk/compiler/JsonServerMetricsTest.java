@@ -0,0 +1,77 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.MAPPER;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.SERVER_PATH;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.SERVER_SPEC;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.assertSupportClasses;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.generateServer;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.getURL;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.rpcRequest;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.startServer;
+
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.server.Server;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.compiler.JavaServerOptions;
+import us.kbase.sdk.compiler.JavaSupportClass;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+public class JsonServerMetricsTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testServerMetrics() throws Exception {
+		final InMemoryFileSaver out = generateServer(tempDir, SERVER_SPEC,
+				JavaServerOptions.getBuilder().withPrometheusEndpoint(true).build());
+		final String src = new String(out.getFiles().get(SERVER_PATH));
+		assertThat("metrics not enabled", src, containsString("enableMetrics(true);"));
+		assertThat("no metrics method", src, containsString("rpc = \"Slow.metrics\""));
+		assertSupportClasses(out, JavaSupportClass.METHOD_LIMITS,
+				JavaSupportClass.LIMITED_SERVLET, JavaSupportClass.METRICS);
+
+		final Server jetty = startServer(tempDir, out);
+		try {
+			final URL url = getURL(jetty);
+			final HttpClient client = HttpClient.newHttpClient();
+			for (int i = 0; i < 3; i++) {
+				client.send(rpcRequest(url, "Slow.echo", "1"), HttpResponse.BodyHandlers.ofString());
+			}
+			final HttpResponse<String> res = client.send(
+					rpcRequest(url, "Slow.metrics", "2"), HttpResponse.BodyHandlers.ofString());
+			assertThat("incorrect status", res.statusCode(), is(200));
+			final Map<?, ?> metrics = (Map<?, ?>) ((List<?>) MAPPER.readValue(
+					res.body(), Map.class).get("result")).get(0);
+			final Map<?, ?> echo = (Map<?, ?>) ((Map<?, ?>) metrics.get("methods"))
+					.get("Slow.echo");
+			assertThat("incorrect calls", echo.get("calls"), is(3));
+			assertThat("incorrect errors", echo.get("errors"), is(0));
+			assertThat("incorrect in flight", echo.get("in_flight"), is(0));
+			assertThat("no request bytes", ((Number) echo.get("request_bytes")).longValue() > 0,
+					is(true));
+			assertThat("no response bytes",
+					((Number) echo.get("response_bytes")).longValue() > 0, is(true));
+
+			final HttpResponse<String> prom = client.send(HttpRequest.newBuilder(
+					url.toURI().resolve("/metrics")).build(), HttpResponse.BodyHandlers.ofString());
+			assertThat("incorrect status", prom.statusCode(), is(200));
+			assertThat("incorrect metrics", prom.body(), containsString(
+					"kbase_jsonrpc_request_duration_seconds_count{method=\"Slow.echo\"} 3\n"));
+		} finally {
+			jetty.stop();
+		}
+	}
+}
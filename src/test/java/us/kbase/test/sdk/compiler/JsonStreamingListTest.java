@@ -0,0 +1,101 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.MAPPER;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.SERVER_PATH;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.STREAMING_SPEC;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.assertSupportClasses;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.generateServer;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.getURL;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.rpcRequest;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.startServer;
+
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.server.Server;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.compiler.JavaServerOptions;
+import us.kbase.sdk.compiler.JavaSupportClass;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+public class JsonStreamingListTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testStreamedParams() throws Exception {
+		final InMemoryFileSaver out = generateServer(
+				tempDir, STREAMING_SPEC, JavaServerOptions.defaults());
+		final String src = new String(out.getFiles().get(SERVER_PATH));
+		assertThat("incorrect base class", src,
+				containsString("SlowServer extends LimitedJsonServerServlet {"));
+		assertThat("incorrect signature", src, containsString(
+				"sum(String name, JsonStreamingList<Map<String,Long>> items, Long offset, "));
+		assertSupportClasses(out, JavaSupportClass.LIMITED_SERVLET,
+				JavaSupportClass.STREAMING_LIST);
+
+		final Server jetty = startServer(tempDir, out);
+		try {
+			final URL url = getURL(jetty);
+			// large enough to be spooled to disk
+			final List<Map<String, Object>> items = new ArrayList<>();
+			long expected = 5;
+			for (int i = 0; i < 100000; i++) {
+				items.add(Map.of("a", i % 10, "padding", "some padding to make the list larger"));
+				expected += i % 10;
+			}
+			final HttpResponse<String> res = HttpClient.newHttpClient().send(
+					rpcRequest(url, "Slow.sum", "1", List.of("n", items, 5)),
+					HttpResponse.BodyHandlers.ofString());
+			assertThat("incorrect status " + res.body(), res.statusCode(), is(200));
+			assertThat("incorrect result", MAPPER.readValue(res.body(), Map.class).get("result"),
+					is(List.of(expected)));
+
+			// tuples are streamed from JSON arrays
+			final List<List<Object>> pairs = new ArrayList<>();
+			long expectedPairs = 0;
+			for (int i = 0; i < 50000; i++) {
+				pairs.add(List.of("some padding to make the list larger", i % 7));
+				expectedPairs += i % 7;
+			}
+			final HttpResponse<String> pairsRes = HttpClient.newHttpClient().send(
+					rpcRequest(url, "Slow.sum_pairs", "2", List.of(pairs)),
+					HttpResponse.BodyHandlers.ofString());
+			assertThat("incorrect status " + pairsRes.body(), pairsRes.statusCode(), is(200));
+			assertThat("incorrect result",
+					MAPPER.readValue(pairsRes.body(), Map.class).get("result"),
+					is(List.of(expectedPairs)));
+		} finally {
+			jetty.stop();
+		}
+	}
+
+	@Test
+	public void testServerBadStreamedParams() throws Exception {
+		final Map<String, String> cases = Map.of(
+				"@streaming", "Invalid @streaming line in the comment of function sum, " +
+						"expected @streaming <parameter> [<parameter> ...]: @streaming",
+				"@streaming items foo", "Function sum has no parameter foo to stream",
+				"@streaming items name", "Parameter name of function sum cannot be streamed " +
+						"as it is not a list");
+		for (final Map.Entry<String, String> c: cases.entrySet()) {
+			final IllegalStateException e = assertThrows(IllegalStateException.class,
+					() -> generateServer(tempDir,
+							STREAMING_SPEC.replace("@streaming items", c.getKey()),
+							JavaServerOptions.defaults()));
+			assertThat("incorrect message " + c.getKey(), e.getMessage(), is(c.getValue()));
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.MAPPER;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.SERVER_PATH;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.SERVER_SPEC;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.assertSupportClasses;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.awaitServerCall;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.generateServer;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.getURL;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.holdServerCalls;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.releaseServerCalls;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.rpcRequest;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.startServer;
+
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.jetty.server.Server;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.compiler.JavaServerOptions;
+import us.kbase.sdk.compiler.JavaSupportClass;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+public class LimitedJsonServerServletTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testLimitedServer() throws Exception {
+		final InMemoryFileSaver out = generateServer(
+				tempDir, SERVER_SPEC, JavaServerOptions.defaults());
+		final String src = new String(out.getFiles().get(SERVER_PATH));
+		assertThat("incorrect base class", src,
+				containsString("SlowServer extends LimitedJsonServerServlet {"));
+		assertThat("incorrect startup", src, containsString("().startupServer("));
+		assertSupportClasses(out, JavaSupportClass.METHOD_LIMITS,
+				JavaSupportClass.LIMITED_SERVLET);
+
+		holdServerCalls();
+		final Server jetty = startServer(tempDir, out);
+		try {
+			final URL url = getURL(jetty);
+			final HttpClient client = HttpClient.newHttpClient();
+			final CompletableFuture<HttpResponse<String>> first = client.sendAsync(
+					rpcRequest(url, "Slow.wait", "1"), HttpResponse.BodyHandlers.ofString());
+			awaitServerCall();
+
+			final HttpResponse<String> rejected = client.send(
+					rpcRequest(url, "Slow.wait", "2"), HttpResponse.BodyHandlers.ofString());
+			assertThat("incorrect status", rejected.statusCode(), is(500));
+			final Map<?, ?> err = MAPPER.readValue(rejected.body(), Map.class);
+			assertThat("incorrect id", err.get("id"), is("2"));
+			assertThat("incorrect code", ((Map<?, ?>) err.get("error")).get("code"), is(-32003));
+
+			final HttpResponse<String> echo = client.send(
+					rpcRequest(url, "Slow.echo", "3"), HttpResponse.BodyHandlers.ofString());
+			assertThat("incorrect echo status", echo.statusCode(), is(200));
+			assertThat("incorrect echo result",
+					MAPPER.readValue(echo.body(), Map.class).get("result"), is(List.of("hi")));
+
+			releaseServerCalls();
+			final HttpResponse<String> res = first.get();
+			assertThat("incorrect wait status", res.statusCode(), is(200));
+			assertThat("incorrect wait result",
+					MAPPER.readValue(res.body(), Map.class).get("result"), is(List.of("hi")));
+		} finally {
+			releaseServerCalls();
+			jetty.stop();
+		}
+	}
+
+	@Test
+	public void testDefaultServerUnchanged() throws Exception {
+		final InMemoryFileSaver out = generateServer(tempDir,
+				SERVER_SPEC.replace("@concurrency 1", ""), JavaServerOptions.defaults());
+		for (final JavaSupportClass c: JavaSupportClass.values()) {
+			assertThat("support class generated " + c,
+					out.getFiles().containsKey(c.getPath()), is(false));
+		}
+		final String src = new String(out.getFiles().get(SERVER_PATH));
+		assertThat("incorrect base class", src,
+				containsString("SlowServer extends JsonServerServlet {"));
+		assertThat("incorrect startup", src, containsString("().startupServer("));
+		assertThat("metrics generated", src, not(containsString("Slow.metrics")));
+	}
+
+	@Test
+	public void testServerBadConcurrencyLimit() throws Exception {
+		for (final String limit: List.of("", "0", "1 -1", "x", "1 2 3")) {
+			final IllegalStateException e = assertThrows(IllegalStateException.class,
+					() -> generateServer(tempDir, SERVER_SPEC.replace("@concurrency 1",
+							"@concurrency " + limit), JavaServerOptions.defaults()));
+			assertThat("incorrect message " + limit, e.getMessage(), is(
+					"Invalid @concurrency line in the comment of function wait, expected " +
+					"@concurrency <max concurrent calls> [<max queued calls>]: " +
+					("@concurrency " + limit).trim()));
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.codemodel.JCodeModel;
+
+import us.kbase.kidl.KbService;
+import us.kbase.kidl.KidlParser;
+import us.kbase.sdk.compiler.CachingIncludeProvider;
+import us.kbase.sdk.compiler.CompileOptions;
+import us.kbase.sdk.compiler.JavaData;
+import us.kbase.sdk.compiler.JavaTypeGenerator;
+import us.kbase.sdk.util.FileSaveCodeWriter;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+public class PojoGeneratorTest {
+
+	@TempDir
+	Path tempDir;
+
+	private static final String INCLUDED = """
+			module Other {
+			    /* A thing from another module */
+			    typedef structure {
+			        string thing_id;
+			    } Thing;
+			};
+			""";
+
+	private static final String SPEC = """
+			#include <Other.spec>
+			module Main {
+			    /* An object reference.
+			       Second line of the comment.
+			    */
+			    typedef string ref;
+
+			    typedef structure {
+			        ref obj_ref;
+			        int count;
+			        float score;
+			    } Info;
+
+			    typedef Info InfoAlias;
+
+			    /* Everything at once */
+			    typedef structure {
+			        string name;
+			        InfoAlias info;
+			        list<Info> infos;
+			        mapping<string, list<Info>> infos_by_name;
+			        tuple<int, Info, string> triple;
+			        list<tuple<string, float>> pairs;
+			        UnspecifiedObject data;
+			        Other.Thing thing;
+			        list<Other.Thing> things;
+			        mapping<string, int> counts;
+			    } Params;
+
+			    funcdef run(Params params) returns (Info) authentication required;
+			};
+			""";
+
+	@Test
+	public void matchesJsonSchemaGeneration() throws Exception {
+		Files.writeString(tempDir.resolve("Other.spec"), INCLUDED);
+		final List<KbService> services = KidlParser.parseSpec(KidlParser.parseSpecInt(
+				new StringReader(SPEC), null, new CachingIncludeProvider(tempDir.toFile())));
+
+		final InMemoryFileSaver direct = new InMemoryFileSaver();
+		final JavaData data = JavaTypeGenerator.processSpec(services, direct, "us.kbase",
+				true, null, null, null, "0.1.0", "", "");
+
+		final JCodeModel codeModel = JsonSchemaPojoGenerator.generate(data, "us.kbase");
+		final InMemoryFileSaver viaSchemas = new InMemoryFileSaver();
+		final FileSaveCodeWriter cw = new FileSaveCodeWriter(viaSchemas);
+		codeModel.build(cw, cw);
+
+		final Map<String, byte[]> expected = viaSchemas.getFiles();
+		assertThat("incorrect POJO count", expected.size(), is(3));
+		for (final Map.Entry<String, byte[]> e: expected.entrySet()) {
+			assertThat("incorrect code for " + e.getKey(),
+					new String(direct.getFiles().get(e.getKey()), StandardCharsets.UTF_8),
+					is(new String(e.getValue(), StandardCharsets.UTF_8)));
+		}
+		assertThat("incorrect tuple types", data.getTupleTypes(), is(Set.of(2, 3)));
+	}
+
+	@Test
+	public void lazyAdditionalProperties() throws Exception {
+		final Class<?> eager = compileInfo(false);
+		final Class<?> lazy = compileInfo(true);
+		final ObjectMapper mapper = new ObjectMapper();
+		for (final String json: List.of(
+				"{\"obj_ref\":\"1/2/3\",\"count\":1}",
+				"{\"obj_ref\":\"1/2/3\",\"score\":1.5,\"extra\":[1,{\"a\":\"b\"}]}")) {
+			final Object e = mapper.readValue(json, eager);
+			final Object l = mapper.readValue(json, lazy);
+			assertThat("incorrect round trip", mapper.writeValueAsString(l), is(json));
+			assertThat("incorrect round trip", mapper.writeValueAsString(l),
+					is(mapper.writeValueAsString(e)));
+			assertThat("incorrect toString", l.toString(), is(e.toString()));
+		}
+		final Field f = lazy.getDeclaredField("additionalProperties");
+		f.setAccessible(true);
+		final Object l = mapper.readValue("{\"count\":1}", lazy);
+		assertThat("map was allocated", f.get(l) == null, is(true));
+		assertThat("incorrect json", mapper.writeValueAsString(l), is("{\"count\":1}"));
+		assertThat("map was allocated by serialization", f.get(l) == null, is(true));
+	}
+
+	private Class<?> compileInfo(final boolean lazy) throws Exception {
+		final List<KbService> services = KidlParser.parseSpec(KidlParser.parseSpecInt(
+				new StringReader(SPEC.replace("#include <Other.spec>\n", "")
+						.replaceAll(".*Other\\.Thing.*\n", "")),
+				null, new CachingIncludeProvider(tempDir.toFile())));
+		final InMemoryFileSaver out = new InMemoryFileSaver();
+		JavaTypeGenerator.processSpec(services, out, "us.kbase", false, null, null, null,
+				"0.1.0", "", "", null, null,
+				CompileOptions.getBuilder().withJavaLazyAdditionalProperties(lazy).build());
+		final Path src = Files.createDirectories(tempDir.resolve(lazy + "/us/kbase/main"))
+				.resolve("Info.java");
+		Files.write(src, out.getFiles().get("us/kbase/main/Info.java"));
+		final Path classes = Files.createDirectories(tempDir.resolve(lazy + "_classes"));
+		final int res = ToolProvider.getSystemJavaCompiler().run(null, null, null,
+				"-cp", System.getProperty("java.class.path"), "-d", classes.toString(),
+				src.toString());
+		assertThat("compile failed", res, is(0));
+		final URLClassLoader cl = new URLClassLoader(
+				new URL[] {classes.toUri().toURL()}, getClass().getClassLoader());
+		return cl.loadClass("us.kbase.main.Info");
+	}
+}
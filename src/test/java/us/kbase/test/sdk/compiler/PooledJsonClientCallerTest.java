@@ -0,0 +1,157 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.CLIENT_PATH;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.compileClient;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.generateClient;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.common.service.RpcContext;
+import us.kbase.common.service.ServerException;
+import us.kbase.common.service.Tuple2;
+import us.kbase.sdk.compiler.JavaClientOptions;
+import us.kbase.sdk.compiler.JavaSupportClass;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+public class PooledJsonClientCallerTest {
+
+	@TempDir
+	Path tempDir;
+
+	private FakeJsonRpcServer server;
+
+	@BeforeEach
+	public void startServer() throws Exception {
+		server = new FakeJsonRpcServer();
+	}
+
+	@AfterEach
+	public void stopServer() {
+		server.close();
+	}
+
+	@Test
+	public void testGeneratedClient() throws Exception {
+		final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+				.withHttpClientTransport(true).build(), null);
+		final Class<?> clientClass = cl.loadClass("us.kbase.echo.EchoClient");
+		final URL url = server.getURL();
+		final List<Object> clients = List.of(
+				clientClass.getConstructor(URL.class).newInstance(url),
+				clientClass.getConstructor(URL.class, HttpClient.class).newInstance(url,
+						HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build()));
+		for (final Object client: clients) {
+			server.clientPorts.clear();
+			final Method echo = clientClass.getMethod("echo", String.class, RpcContext[].class);
+			final List<Object> results = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				results.add(echo.invoke(client, "hi" + i, new RpcContext[0]));
+			}
+			assertThat("incorrect results", results, is(List.of("hi0", "hi1", "hi2", "hi3", "hi4")));
+			assertThat("connection not reused", server.clientPorts.size(), is(1));
+
+			final Tuple2<?, ?> pair = (Tuple2<?, ?>) clientClass
+					.getMethod("pair", Tuple2.class, RpcContext[].class)
+					.invoke(client, new Tuple2<String, Long>().withE1("a").withE2(1L),
+							new RpcContext[0]);
+			assertThat("incorrect tuple", List.of(pair.getE1(), pair.getE2()),
+					is(List.of("a", 1L)));
+
+			final Method fail = clientClass.getMethod("fail", RpcContext[].class);
+			final InvocationTargetException e = assertThrows(InvocationTargetException.class,
+					() -> fail.invoke(client, (Object) new RpcContext[0]));
+			final ServerException se = (ServerException) e.getCause();
+			assertThat("incorrect message", se.getMessage(), is("no luck"));
+			assertThat("incorrect data", se.getData(), is("traceback"));
+		}
+		// a client with its own HttpClient can't swap it for the shared trust all client
+		final Method trustAll = clientClass.getMethod(
+				"setAllSSLCertificatesTrusted", boolean.class);
+		trustAll.invoke(clients.get(0), true);
+		final InvocationTargetException e = assertThrows(InvocationTargetException.class,
+				() -> trustAll.invoke(clients.get(1), true));
+		assertThat("incorrect exception", e.getCause().getMessage(), is(
+				"A caller with its own HttpClient can't trust all SSL certificates. Use an " +
+				"HttpClient with an SSLContext that trusts all certificates instead"));
+		cl.close();
+	}
+
+	@Test
+	public void testGeneratedClientStreamingMode() throws Exception {
+		final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+				.withHttpClientTransport(true).build(), null);
+		final Class<?> clientClass = cl.loadClass("us.kbase.echo.EchoClient");
+		final Object client = clientClass.getConstructor(URL.class).newInstance(server.getURL());
+		clientClass.getMethod("setStreamingModeOn", boolean.class).invoke(client, true);
+		final Set<Path> existing = FakeJsonRpcServer.requestFiles();
+		server.recordRequestFiles = true;
+		final Object res = clientClass.getMethod("echo", String.class, RpcContext[].class)
+				.invoke(client, "hi", new RpcContext[0]);
+		server.recordRequestFiles = false;
+		assertThat("incorrect result", res, is("hi"));
+		final Set<Path> spooled = new HashSet<>(server.requestFiles);
+		spooled.removeAll(existing);
+		assertThat("request not spooled", spooled.size(), is(1));
+		assertThat("request file not deleted", Files.exists(spooled.iterator().next()),
+				is(false));
+		cl.close();
+	}
+
+	@Test
+	public void testGeneratedClientReadTimeout() throws Exception {
+		final URLClassLoader cl = compileClient(tempDir, JavaClientOptions.getBuilder()
+				.withHttpClientTransport(true).build(), null);
+		final Class<?> clientClass = cl.loadClass("us.kbase.echo.EchoClient");
+		final Object client = clientClass.getConstructor(URL.class).newInstance(server.getURL());
+		clientClass.getMethod("setConnectionReadTimeOut", Integer.class).invoke(client, 200);
+		final Method echo = clientClass.getMethod("echo", String.class, RpcContext[].class);
+		final CountDownLatch release = new CountDownLatch(1);
+		server.stallRelease = release;
+		try {
+			final InvocationTargetException e = assertThrows(InvocationTargetException.class,
+					() -> echo.invoke(client, "hi", new RpcContext[0]));
+			assertThat("incorrect exception " + e.getCause(),
+					e.getCause() instanceof HttpTimeoutException, is(true));
+		} finally {
+			server.stallRelease = null;
+			release.countDown();
+		}
+		cl.close();
+	}
+
+	@Test
+	public void testDefaultClientUnchanged() throws Exception {
+		final InMemoryFileSaver out = generateClient(tempDir, JavaClientOptions.defaults(), null);
+		for (final JavaSupportClass c: JavaSupportClass.values()) {
+			assertThat("support class generated " + c,
+					out.getFiles().containsKey(c.getPath()), is(false));
+		}
+		final String client = new String(out.getFiles().get(CLIENT_PATH));
+		assertThat("incorrect caller", client,
+				containsString("private JsonClientCaller caller;"));
+		assertThat("future methods generated", client, not(containsString("echoAsync")));
+		assertThat("batch generated", client, not(containsString("newBatch")));
+	}
+}
@@ -0,0 +1,104 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.compiler.PrevCodeParser;
+import us.kbase.sdk.compiler.PrevCodeParser.Region;
+
+public class PrevCodeParserTest {
+
+	@TempDir
+	Path tempDir;
+
+	private static final String IMPL =
+			"#BEGIN_HEADER\n" +
+			"import os\n" +
+			"#END_HEADER\n" +
+			"class Foo:\n" +
+			"    #BEGIN_CLASS_HEADER\n" +
+			"    #END_CLASS_HEADER\n" +
+			"    def __init__(self, config):\n" +
+			"        #BEGIN_CONSTRUCTOR\n" +
+			"        self.config = config\n" +
+			"        #END_CONSTRUCTOR\n" +
+			"    def run(self, ctx, params):\n" +
+			"        #BEGIN run\n" +
+			"        x = 1\n" +
+			"\n" +
+			"        #END run\n" +
+			"        return [x]\n";
+
+	@Test
+	public void findRegions() throws Exception {
+		final Map<String, Region> regions = PrevCodeParser.findRegions(
+				Arrays.asList(IMPL.split("\n")), "#", Arrays.asList("run", "other"));
+
+		assertThat("incorrect header", regions.get(PrevCodeParser.HEADER).getCode(),
+				is("import os\n"));
+		assertThat("incorrect class header", regions.get(PrevCodeParser.CLSHEADER).getCode(),
+				is(""));
+		assertThat("incorrect constructor", regions.get(PrevCodeParser.CONSTRUCTOR).getCode(),
+				is("        self.config = config\n"));
+		final Region run = regions.get(PrevCodeParser.METHOD + "run");
+		assertThat("incorrect method", run.getCode(), is("        x = 1\n\n"));
+		assertThat("incorrect begin", run.getBeginLine(), is(12));
+		assertThat("incorrect end", run.getEndLine(), is(15));
+		assertThat("incorrect status", regions.get(PrevCodeParser.STATUS), is(nullValue()));
+		assertThat("incorrect other", regions.get(PrevCodeParser.METHOD + "other"),
+				is(nullValue()));
+	}
+
+	@Test
+	public void findRegionsLastBlock() throws Exception {
+		final List<String> lines = Arrays.asList(
+				"#BEGIN run", "a", "#END run", "#BEGIN run", "b", "#END run", "#BEGIN run", "c");
+		final Region run = PrevCodeParser.findRegions(lines, "#", Arrays.asList("run"))
+				.get(PrevCodeParser.METHOD + "run");
+
+		assertThat("incorrect method", run.getCode(), is("b\n"));
+		assertThat("incorrect begin", run.getBeginLine(), is(4));
+	}
+
+	@Test
+	public void parsePrevCode() throws Exception {
+		final File impl = tempDir.resolve("FooImpl.py").toFile();
+		Files.writeString(impl.toPath(), IMPL.replace("\n", "\r\n"));
+
+		final Map<String, String> code = PrevCodeParser.parsePrevCode(
+				impl, "#", Arrays.asList("run"), true);
+
+		assertThat("incorrect header", code.get(PrevCodeParser.HEADER), is("import os\n"));
+		assertThat("incorrect method", code.get(PrevCodeParser.METHOD + "run"),
+				is("        x = 1\n\n"));
+		try (final Stream<Path> files = Files.list(tempDir)) {
+			assertThat("missing backup", files.anyMatch(p -> p.getFileName().toString()
+					.matches("FooImpl\\.py\\.bak-\\d{4}(-\\d{2}){5}")), is(true));
+		}
+	}
+
+	@Test
+	public void parsePrevCodeMissingConstructor() throws Exception {
+		final File impl = tempDir.resolve("FooImpl.py").toFile();
+		Files.writeString(impl.toPath(), IMPL.replace("#END_CONSTRUCTOR", "#END"));
+
+		final ParseException e = assertThrows(ParseException.class,
+				() -> PrevCodeParser.parsePrevCode(impl, "#", Arrays.asList("run"), true));
+		assertThat("incorrect message", e.getMessage(),
+				is("Missing constructor in original file [" + impl + "]"));
+	}
+}
@@ -0,0 +1,80 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.kidl.KidlParseException;
+import us.kbase.sdk.compiler.TupleClassGenerator;
+import us.kbase.sdk.util.DiskFileSaver;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+public class TupleClassGeneratorTest {
+
+	@TempDir
+	Path tempDir;
+
+	private static final FileTime OLD = FileTime.fromMillis(1000000000000L);
+
+	@Test
+	public void testSource() throws Exception {
+		final String src = TupleClassGenerator.getSource(2);
+		assertThat("incorrect class", src, containsString("public class Tuple2 <T1, T2> {"));
+		assertThat("incorrect field", src, containsString("    private T2 e2;\n"));
+		assertThat("incorrect map", src,
+				containsString("    private Map<String, Object> additionalProperties;\n"));
+		assertThat("incorrect toString", src,
+				containsString("return \"Tuple2 [e1=\" + e1 + \", e2=\" + e2 + \"]\";"));
+		assertThat("source not cached", TupleClassGenerator.getSource(2), sameInstance(src));
+	}
+
+	@Test
+	public void testWriteSkipsIdenticalFiles() throws Exception {
+		final Set<Integer> arities = new TreeSet<>(Set.of(1, 3));
+		assertThat("incorrect written", TupleClassGenerator.write(
+				arities, new DiskFileSaver(tempDir.toFile())), is(2));
+		final Path t1 = tempDir.resolve("us/kbase/common/service/Tuple1.java");
+		final Path t3 = tempDir.resolve("us/kbase/common/service/Tuple3.java");
+		assertThat("incorrect content", Files.readString(t3),
+				is(TupleClassGenerator.getSource(3)));
+		Files.setLastModifiedTime(t1, OLD);
+		Files.writeString(t3, "old tuple\n");
+		Files.setLastModifiedTime(t3, OLD);
+
+		arities.add(2);
+		assertThat("incorrect written", TupleClassGenerator.write(
+				arities, new DiskFileSaver(tempDir.toFile())), is(2));
+		assertThat("file was rewritten", Files.getLastModifiedTime(t1), is(OLD));
+		assertThat("incorrect content", Files.readString(t3),
+				is(TupleClassGenerator.getSource(3)));
+		assertThat("incorrect content",
+				Files.readString(tempDir.resolve("us/kbase/common/service/Tuple2.java")),
+				is(TupleClassGenerator.getSource(2)));
+	}
+
+	@Test
+	public void testWriteInMemory() throws Exception {
+		final InMemoryFileSaver fs = new InMemoryFileSaver();
+		assertThat("incorrect written", TupleClassGenerator.write(Set.of(4), fs), is(1));
+		assertThat("incorrect files", fs.getFiles().keySet(),
+				is(Set.of("us/kbase/common/service/Tuple4.java")));
+	}
+
+	@Test
+	public void testBadArity() throws Exception {
+		final KidlParseException e = assertThrows(KidlParseException.class,
+				() -> TupleClassGenerator.getSource(0));
+		assertThat("incorrect message", e.getMessage(), is("Wrong tuple type: 0"));
+	}
+}
@@ -0,0 +1,72 @@
+package us.kbase.test.sdk.compiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.SERVER_PATH;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.SERVER_SPEC;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.assertSupportClasses;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.compile;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.generateServer;
+import static us.kbase.test.sdk.compiler.JavaCodeTestUtils.serverPaths;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.compiler.JavaServerOptions;
+import us.kbase.sdk.compiler.JavaSupportClass;
+import us.kbase.sdk.compiler.JavaSupportClass.ServerFeature;
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+public class VirtualThreadServerTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testVirtualThreadServer() throws Exception {
+		final InMemoryFileSaver out = generateServer(tempDir,
+				SERVER_SPEC.replace("@concurrency 1", ""), JavaServerOptions.getBuilder()
+						.withTargetJavaVersion(21).withVirtualThreads(true).build());
+		final String src = new String(out.getFiles().get(SERVER_PATH));
+		assertThat("incorrect base class", src,
+				containsString("SlowServer extends LimitedJsonServerServlet {"));
+		assertThat("incorrect startup", src,
+				containsString("().startupVirtualThreadServer(Integer.parseInt(args[0]));"));
+		assertThat("limits generated", src, not(containsString("@JsonServerMethodLimits")));
+		assertSupportClasses(out, JavaSupportClass.LIMITED_SERVLET);
+		assertThat("incorrect executor",
+				new String(out.getFiles().get(JavaSupportClass.LIMITED_SERVLET.getPath())),
+				containsString("(Executors.newVirtualThreadPerTaskExecutor())"));
+		assertThat("virtual thread server generated", JavaSupportClass.LIMITED_SERVLET
+				.getSource(EnumSet.of(ServerFeature.METHOD_LIMITS)),
+				not(containsString("startupVirtualThreadServer")));
+		// the virtual thread executor can only be compiled on Java 21 or later
+		if (Runtime.version().feature() >= JavaServerOptions.VIRTUAL_THREADS_JAVA_VERSION) {
+			compile(tempDir, out, serverPaths(out)).close();
+		}
+	}
+
+	@Test
+	public void testVirtualThreadServerOldTarget() throws Exception {
+		for (final int target: List.of(17, 20)) {
+			final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+					() -> JavaServerOptions.getBuilder().withTargetJavaVersion(target)
+							.withVirtualThreads(true).build());
+			assertThat("incorrect message " + target, e.getMessage(), is(
+					"Servers with virtual threads require a target Java version of at " +
+					"least 21, but the target is " + target));
+		}
+		final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> JavaServerOptions.getBuilder().withVirtualThreads(true).build());
+		assertThat("incorrect message", e.getMessage(), is(
+				"Servers with virtual threads require a target Java version of at " +
+				"least 21, but the target is 17"));
+	}
+}
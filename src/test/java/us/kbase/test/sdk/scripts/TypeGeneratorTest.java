@@ -517,6 +517,41 @@ public class TypeGeneratorTest {
 		}
 	}
 
+	@Test
+	public void testPythonServerModes() throws Exception {
+		// tests the settings and the threaded server of the generated python server with the
+		// empty args spec
+		final int testNum = 7;
+		final File workDir = prepareWorkDir(testNum);
+		System.out.println();
+		System.out.println("Test " + testNum + " (testPythonServerModes) is starting in directory: " +
+				workDir.getAbsolutePath());
+		final String testPackage = rootPackageName + ".test" + testNum;
+		final File libDir = new File(workDir, "lib");
+		final File binDir = new File(workDir, "bin");
+		final JavaData parsingData = prepareJavaCode(
+				testNum, workDir, testPackage, libDir, binDir, null, true);
+		final File serverOutDir = preparePyServerCode(testNum, workDir);
+		pythonServerCorrection(serverOutDir, parsingData);
+		final File cfgFile = prepareDeployCfg(workDir, getModuleName(parsingData));
+		final String serverModule = findPythonServerScript(serverOutDir).getName()
+				.replaceAll("\\.py$", "");
+		final Path testServer = Paths.get("test_scripts/python/test_server.py").toAbsolutePath();
+		final File shellFile = new File(serverOutDir, "test_python_server.sh");
+		TextUtils.writeFileLines(Arrays.asList(
+				"#!/bin/bash",
+				"export KB_DEPLOYMENT_CONFIG=" + cfgFile.getCanonicalPath(),
+				"python " + testServer + " " + serverModule + " -v"
+				), shellFile);
+		final ProcessHelper ph = ProcessHelper.cmd("bash", shellFile.getCanonicalPath())
+				.exec(serverOutDir, null, true, true);
+		if (ph.getExitCode() != 0) {
+			System.out.println("Python server test output:\n" + ph.getSavedOutput());
+			System.err.println("Python server test errors:\n" + ph.getSavedErrors());
+		}
+		assertEquals(0, ph.getExitCode(), "Python server test exit code should be 0");
+	}
+
 	private Server startCBSMock(File binDir, File tempDir) throws Exception {
 		Server jettyServer = new Server(findFreePort());
 		ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
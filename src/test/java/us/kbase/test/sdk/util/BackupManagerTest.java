@@ -0,0 +1,112 @@
+package us.kbase.test.sdk.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.util.BackupManager;
+
+public class BackupManagerTest {
+
+	private static final DateTimeFormatter SUFFIX =
+			DateTimeFormatter.ofPattern("'.bak-'yyyy-MM-dd-HH-mm-ss");
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testAlways() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		Files.writeString(f, "text\n");
+		final Path backup = BackupManager.always().backup(f, SUFFIX).get();
+		assertThat("incorrect dir", backup.getParent(), is(tempDir));
+		assertThat("incorrect name", backup.getFileName().toString()
+				.matches("foo\\.txt\\.bak-\\d{4}(-\\d{2}){5}"), is(true));
+		assertThat("incorrect content", Files.readString(backup), is("text\n"));
+	}
+
+	@Test
+	public void testOff() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		Files.writeString(f, "text\n");
+		assertThat("incorrect backup", BackupManager.off().backup(f, SUFFIX),
+				is(Optional.empty()));
+		assertThat("incorrect files", list(tempDir), is(List.of(f)));
+	}
+
+	@Test
+	public void testKeepLast() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		final BackupManager bm = BackupManager.fromPolicy("keep-last=2", null);
+		for (int i = 0; i < 4; i++) {
+			Files.writeString(f, "text " + i + "\n");
+			bm.backup(f, SUFFIX);
+			Thread.sleep(2);  // backups are named by millisecond timestamp
+		}
+		final Path dir = bm.getBackupDir(f);
+		assertThat("incorrect sidecar dir", dir.getParent(), is(tempDir.resolve(".kb_sdk_backups")));
+		final List<Path> backups = list(dir);
+		assertThat("incorrect count", backups.size(), is(2));
+		assertThat("incorrect content", Files.readString(backups.get(0)), is("text 2\n"));
+		assertThat("incorrect content", Files.readString(backups.get(1)), is("text 3\n"));
+	}
+
+	@Test
+	public void testIfChanged() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		final Path root = tempDir.resolve("backups");
+		final BackupManager bm = BackupManager.fromPolicy(" If-Changed ", root);
+		Files.writeString(f, "text\n");
+		assertThat("no backup", bm.backup(f, SUFFIX).isPresent(), is(true));
+		Thread.sleep(2);
+		assertThat("unexpected backup", bm.backup(f, SUFFIX), is(Optional.empty()));
+		Files.writeString(f, "other\n");
+		assertThat("no backup", bm.backup(f, SUFFIX).isPresent(), is(true));
+		Thread.sleep(2);
+		assertThat("unexpected backup", bm.backup(f, SUFFIX), is(Optional.empty()));
+		assertThat("incorrect dir", bm.getBackupDir(f).getParent(), is(root));
+		assertThat("incorrect count", list(bm.getBackupDir(f)).size(), is(2));
+	}
+
+	@Test
+	public void testSameNameDifferentDirs() throws Exception {
+		final Path root = tempDir.resolve("backups");
+		final BackupManager bm = BackupManager.fromPolicy("keep-last=1,if-changed", root);
+		final Path f1 = Files.createDirectory(tempDir.resolve("a")).resolve("deploy.cfg");
+		final Path f2 = Files.createDirectory(tempDir.resolve("b")).resolve("deploy.cfg");
+		Files.writeString(f1, "a\n");
+		Files.writeString(f2, "b\n");
+		bm.backup(f1, SUFFIX);
+		bm.backup(f2, SUFFIX);
+		assertThat("dirs match", bm.getBackupDir(f1).equals(bm.getBackupDir(f2)), is(false));
+		assertThat("incorrect content", Files.readString(list(bm.getBackupDir(f1)).get(0)),
+				is("a\n"));
+		assertThat("incorrect content", Files.readString(list(bm.getBackupDir(f2)).get(0)),
+				is("b\n"));
+	}
+
+	@Test
+	public void testIllegalPolicy() throws Exception {
+		for (final String p: List.of("sometimes", "keep-last=0", "keep-last=x", "if-changed,")) {
+			final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+					() -> BackupManager.fromPolicy(p, null));
+			assertThat("incorrect message", e.getMessage().contains(p), is(true));
+		}
+	}
+
+	private List<Path> list(final Path dir) throws Exception {
+		try (final Stream<Path> s = Files.list(dir)) {
+			return s.sorted().toList();
+		}
+	}
+}
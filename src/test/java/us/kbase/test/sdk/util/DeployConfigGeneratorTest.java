@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,6 +17,7 @@ import org.junit.jupiter.api.io.TempDir;
 
 import uk.org.webcompere.systemstubs.environment.EnvironmentVariables;
 import uk.org.webcompere.systemstubs.jupiter.SystemStubsExtension;
+import us.kbase.sdk.util.BackupManager;
 import us.kbase.sdk.util.DeployConfigGenerator;
 
 @ExtendWith(SystemStubsExtension.class)
@@ -25,7 +28,8 @@ public class DeployConfigGeneratorTest {
 
 	private void assertBackupExists() throws IOException {
 		final boolean backupExists = Files.list(tempDir)
-				.anyMatch(p -> p.getFileName().toString().startsWith("template.cfg.bak."));
+				.anyMatch(p -> p.getFileName().toString().matches(
+						"template\\.cfg\\.bak\\.\\d{4}-\\d{2}-\\d{2}T\\d{2}(-\\d{2}){2}-\\d{3}"));
 		assertThat("Backup file should exist with timestamped name", backupExists, is(true));
 	}
 
@@ -176,6 +180,37 @@ public class DeployConfigGeneratorTest {
 		assertBackupExists();
 	}
 	
+	@Test
+	public void testGenerateDeployConfigBackupPolicy() throws Exception {
+		final Path templateFile = tempDir.resolve("template.cfg");
+		final Path propertiesFile = tempDir.resolve("props.ini");
+		Files.writeString(propertiesFile, "[global]\nkbase_endpoint=https://example.org\n");
+
+		Files.writeString(templateFile, "endpoint={{ kbase_endpoint }}\n");
+		new EnvironmentVariables().set("KB_SDK_BACKUP_POLICY", "off")
+			.execute(() -> {
+				DeployConfigGenerator.generateDeployConfig(templateFile, propertiesFile);
+			});
+		assertThat("Incorrect template render", Files.readString(templateFile),
+				is("endpoint=https://example.org\n"));
+		try (final Stream<Path> s = Files.list(tempDir)) {
+			assertThat("Backup file should not exist", s.count(), is(2L));
+		}
+
+		final BackupManager bm = BackupManager.fromPolicy("keep-last=1", null);
+		for (final String text: List.of("a={{ kbase_endpoint }}\n", "b={{ kbase_endpoint }}\n")) {
+			Files.writeString(templateFile, text);
+			DeployConfigGenerator.generateDeployConfig(templateFile, propertiesFile, bm);
+			Thread.sleep(2);  // backups are named by millisecond timestamp
+		}
+		try (final Stream<Path> s = Files.list(bm.getBackupDir(templateFile))) {
+			final List<Path> backups = s.toList();
+			assertThat("Incorrect backup count", backups.size(), is(1));
+			assertThat("Incorrect backup", Files.readString(backups.get(0)),
+					is("b={{ kbase_endpoint }}\n"));
+		}
+	}
+	
 	@Test
 	public void testGenerateDeployConfigFail() throws Exception {
 		final Path t = tempDir.resolve("template.cfg");
@@ -0,0 +1,76 @@
+package us.kbase.test.sdk.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import us.kbase.sdk.util.InMemoryFileSaver;
+
+public class InMemoryFileSaverTest {
+
+	private InMemoryFileSaver populate() throws Exception {
+		final InMemoryFileSaver fs = new InMemoryFileSaver();
+		try (final Writer w = fs.withPrefix("lib/src").openWriter("us/Foo.java")) {
+			w.write("class Foo {}\n");
+		}
+		try (final OutputStream os = fs.openStream("a.txt")) {
+			os.write("a\n".getBytes(StandardCharsets.UTF_8));
+		}
+		return fs;
+	}
+
+	@Test
+	public void testSave() throws Exception {
+		final InMemoryFileSaver fs = populate();
+		assertThat("incorrect files", new ArrayList<>(fs.getFiles().keySet()),
+				is(Arrays.asList("a.txt", "lib/src/us/Foo.java")));
+		assertThat("incorrect content", new String(fs.getFiles().get("a.txt"),
+				StandardCharsets.UTF_8), is("a\n"));
+		assertThat("incorrect file", fs.getAsFileOrNull("a.txt"), is(nullValue()));
+	}
+
+	@Test
+	public void testZip() throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		populate().writeZip(bos);
+		final List<String> names = new ArrayList<>();
+		final List<String> contents = new ArrayList<>();
+		try (final ZipInputStream zis = new ZipInputStream(
+				new ByteArrayInputStream(bos.toByteArray()))) {
+			ZipEntry e;
+			while ((e = zis.getNextEntry()) != null) {
+				names.add(e.getName());
+				contents.add(new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+		assertThat("incorrect names", names, is(Arrays.asList("a.txt", "lib/src/us/Foo.java")));
+		assertThat("incorrect contents", contents, is(Arrays.asList("a\n", "class Foo {}\n")));
+	}
+
+	@Test
+	public void testTar() throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		populate().writeTar(bos);
+		final byte[] tar = bos.toByteArray();
+		// 2 files of 1 header block and 1 data block each, plus 2 end of archive blocks
+		assertThat("incorrect size", tar.length, is(6 * 512));
+		assertThat("incorrect name", new String(tar, 0, 5, StandardCharsets.UTF_8), is("a.txt"));
+		assertThat("incorrect content", new String(tar, 512, 2, StandardCharsets.UTF_8),
+				is("a\n"));
+		assertThat("incorrect name", new String(tar, 1024, 19, StandardCharsets.UTF_8),
+				is("lib/src/us/Foo.java"));
+	}
+}
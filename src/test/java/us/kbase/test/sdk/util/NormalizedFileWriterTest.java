@@ -0,0 +1,84 @@
+package us.kbase.test.sdk.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.util.NormalizedFileWriter;
+import us.kbase.sdk.util.TextUtils;
+
+public class NormalizedFileWriterTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testNormalize() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		Files.writeString(f, "some much longer text that should be truncated\n");
+		try (final NormalizedFileWriter w = new NormalizedFileWriter(f, false)) {
+			w.write("a\r\nb\r");
+			w.write("\nc\rd");
+		}
+		assertThat("incorrect content", Files.readString(f), is("a\nb\nc\nd\n"));
+	}
+
+	@Test
+	public void testSameAsWriteFileLines() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		try (final NormalizedFileWriter w = new NormalizedFileWriter(f, false)) {
+			w.write("caf\u00e9\r\n\u03bb");
+		}
+		final Path expected = tempDir.resolve("bar.txt");
+		TextUtils.writeFileLines(List.of("caf\u00e9", "\u03bb"), expected.toFile());
+		assertThat("incorrect content", Files.readAllBytes(f), is(Files.readAllBytes(expected)));
+		assertThat("incorrect encoding", Files.readAllBytes(f),
+				is("caf\u00e9\n\u03bb\n".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		new NormalizedFileWriter(f, false).close();
+		assertThat("incorrect content", Files.readString(f), is(""));
+	}
+
+	@Test
+	public void testAtomic() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		Files.writeString(f, "old\n");
+		final NormalizedFileWriter w = new NormalizedFileWriter(f, true);
+		w.write("new");
+		w.flush();
+		assertThat("target changed before close", Files.readString(f), is("old\n"));
+		w.close();
+		assertThat("incorrect content", Files.readString(f), is("new\n"));
+		assertThat("temp file left behind", countFiles(), is(1L));
+	}
+
+	@Test
+	public void testAtomicAbort() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		Files.writeString(f, "old\n");
+		final NormalizedFileWriter w = new NormalizedFileWriter(f, true);
+		w.write("new");
+		w.abort();
+		w.close();
+		assertThat("incorrect content", Files.readString(f), is("old\n"));
+		assertThat("temp file left behind", countFiles(), is(1L));
+	}
+
+	private long countFiles() throws Exception {
+		try (final Stream<Path> s = Files.list(tempDir)) {
+			return s.count();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package us.kbase.test.sdk.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import us.kbase.sdk.util.DiskFileSaver;
+import us.kbase.sdk.util.WriteIfChangedFileSaver;
+
+public class WriteIfChangedFileSaverTest {
+
+	@TempDir
+	Path tempDir;
+
+	private static final FileTime OLD = FileTime.fromMillis(1000000000000L);
+
+	@Test
+	public void testNewFile() throws Exception {
+		final WriteIfChangedFileSaver fs = new WriteIfChangedFileSaver(
+				new DiskFileSaver(tempDir.toFile()));
+		try (final Writer w = fs.openWriter("sub/dir/foo.txt")) {
+			w.write("some text\n");
+		}
+		final Path f = tempDir.resolve("sub/dir/foo.txt");
+		assertThat("incorrect content", Files.readString(f), is("some text\n"));
+		assertThat("incorrect outputs", fs.getOutputFiles(),
+				is(Arrays.asList(f.toFile())));
+		assertCounts(fs, 1, 0, 0);
+	}
+
+	@Test
+	public void testUnchangedFileNotRewritten() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		Files.writeString(f, "some text\n");
+		Files.setLastModifiedTime(f, OLD);
+		final WriteIfChangedFileSaver fs = new WriteIfChangedFileSaver(
+				new DiskFileSaver(tempDir.toFile()));
+		try (final Writer w = fs.openWriter("foo.txt")) {
+			w.write("some text\n");
+		}
+		try (final OutputStream os = fs.openStream("foo.txt")) {
+			os.write("some text\n".getBytes());
+		}
+		assertThat("file was rewritten", Files.getLastModifiedTime(f), is(OLD));
+		assertThat("incorrect outputs", fs.getOutputFiles(), is(Arrays.asList(f.toFile())));
+		assertCounts(fs, 0, 0, 2);
+	}
+
+	@Test
+	public void testSameLengthChangedFileRewritten() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		Files.writeString(f, "some text\n");
+		Files.setLastModifiedTime(f, OLD);
+		final WriteIfChangedFileSaver fs = new WriteIfChangedFileSaver(
+				new DiskFileSaver(tempDir.toFile()));
+		try (final OutputStream os = fs.openStream("foo.txt")) {
+			os.write("same text\n".getBytes());
+		}
+		assertThat("incorrect content", Files.readString(f), is("same text\n"));
+		assertCounts(fs, 0, 1, 0);
+	}
+
+	@Test
+	public void testChangedFileRewritten() throws Exception {
+		final Path f = tempDir.resolve("foo.txt");
+		Files.writeString(f, "some text\n");
+		Files.setLastModifiedTime(f, OLD);
+		final WriteIfChangedFileSaver fs = new WriteIfChangedFileSaver(
+				new DiskFileSaver(tempDir.toFile()));
+		try (final Writer w = fs.openWriter("foo.txt")) {
+			w.write("some other text\n");
+		}
+		assertThat("incorrect content", Files.readString(f), is("some other text\n"));
+		assertThat("file was not rewritten",
+				Files.getLastModifiedTime(f).equals(OLD), is(false));
+		assertThat("incorrect file", fs.getAsFileOrNull("foo.txt"),
+				is(new File(tempDir.toFile(), "foo.txt")));
+		assertCounts(fs, 0, 1, 0);
+	}
+
+	private void assertCounts(
+			final WriteIfChangedFileSaver fs,
+			final long created,
+			final long written,
+			final long skipped) {
+		assertThat("incorrect created", fs.getCreatedCount(), is(created));
+		assertThat("incorrect written", fs.getWrittenCount(), is(written));
+		assertThat("incorrect skipped", fs.getSkippedCount(), is(skipped));
+	}
+}
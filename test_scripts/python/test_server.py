@@ -0,0 +1,201 @@
+import json
+import socket
+import sys
+import threading
+import time
+import unittest
+from multiprocessing import cpu_count
+
+# the generated server module under test, set in main
+server = None
+
+
+def cpus():
+    try:
+        return cpu_count()
+    except NotImplementedError:
+        return 1
+
+
+def send_request(port):
+    '''Opens a connection to the server and sends a JSON-RPC request on it.'''
+    body = json.dumps({'version': '1.1', 'id': '1', 'method': 'M.m',
+                       'params': []}).encode('utf-8')
+    head = ('POST / HTTP/1.0\r\n' +
+            'Content-Type: application/json\r\n' +
+            'Content-Length: ' + str(len(body)) + '\r\n\r\n')
+    sock = socket.create_connection(('localhost', port), 10)
+    sock.sendall(head.encode('ascii') + body)
+    return sock
+
+
+def read_response(sock):
+    '''Reads the response from a connection and returns the status code and
+    the body.'''
+    data = b''
+    try:
+        while True:
+            chunk = sock.recv(65536)
+            if not chunk:
+                break
+            data += chunk
+    finally:
+        sock.close()
+    head, _, body = data.partition(b'\r\n\r\n')
+    return int(head.split()[1]), body
+
+
+class GetServerSettingsTest(unittest.TestCase):
+
+    def setUp(self):
+        self.config = server.config
+
+    def tearDown(self):
+        server.config = self.config
+
+    def settings(self, cfg):
+        server.config = cfg
+        return server.get_server_settings()
+
+    def test_defaults(self):
+        default_workers = min(32, cpus() + 4)
+        self.assertEqual(self.settings(None), ('single', default_workers, 64))
+        self.assertEqual(self.settings({}), ('single', default_workers, 64))
+        self.assertEqual(self.settings({'server_mode': '',
+                                        'server_workers': ' ',
+                                        'server_queue_size': ''}),
+                         ('single', default_workers, 64))
+        self.assertEqual(self.settings({'server_mode': 'threaded'}),
+                         ('threaded', default_workers, 64))
+        self.assertEqual(self.settings({'server_mode': 'prefork'}),
+                         ('prefork', cpus(), 64))
+
+    def test_settings(self):
+        self.assertEqual(self.settings({'server_mode': ' Threaded ',
+                                        'server_workers': '3',
+                                        'server_queue_size': '5'}),
+                         ('threaded', 3, 5))
+        self.assertEqual(self.settings({'server_mode': 'prefork',
+                                        'server_workers': ' 2 ',
+                                        'server_queue_size': '1'}),
+                         ('prefork', 2, 1))
+
+    def test_bad_settings(self):
+        cases = [({'server_mode': 'forked'},
+                  'server_mode must be one of single, threaded, prefork, ' +
+                  'got forked'),
+                 ({'server_workers': '0'},
+                  'server_workers must be a positive integer, got 0'),
+                 ({'server_workers': '-1'},
+                  'server_workers must be a positive integer, got -1'),
+                 ({'server_queue_size': 'lots'},
+                  'server_queue_size must be a positive integer, got lots'),
+                 ({'server_queue_size': '1.5'},
+                  'server_queue_size must be a positive integer, got 1.5')]
+        for cfg, message in cases:
+            try:
+                self.settings(cfg)
+                self.fail('expected ValueError for %s' % cfg)
+            except ValueError as e:
+                self.assertEqual(str(e), message)
+
+
+class ThreadedServerTest(unittest.TestCase):
+
+    def start(self, workers, queue_size):
+        self.lock = threading.Lock()
+        self.running = 0
+        self.max_running = 0
+        self.release = threading.Event()
+
+        def app(environ, start_response):
+            with self.lock:
+                self.running += 1
+                self.max_running = max(self.max_running, self.running)
+            try:
+                self.release.wait(10)
+            finally:
+                with self.lock:
+                    self.running -= 1
+            start_response('200 OK', [('Content-Type', 'application/json')])
+            return [b'{"version": "1.1", "id": "1", "result": []}']
+
+        self.httpd = server._ThreadPoolWSGIServer(('localhost', 0), workers,
+                                                  queue_size)
+        self.httpd.set_app(app)
+        t = threading.Thread(target=self.httpd.serve_forever,
+                             kwargs={'poll_interval': 0.05})
+        t.daemon = True
+        t.start()
+        return self.httpd.server_address[1]
+
+    def tearDown(self):
+        self.release.set()
+        self.httpd.shutdown()
+        self.httpd.server_close()
+
+    def wait_for_running(self, count):
+        end = time.time() + 10
+        while time.time() < end:
+            with self.lock:
+                if self.running == count:
+                    return
+            time.sleep(0.01)
+        self.fail('expected %s running requests, got %s' %
+                  (count, self.running))
+
+    def test_concurrent_requests(self):
+        port = self.start(3, 5)
+        socks = [send_request(port) for _ in range(3)]
+        self.wait_for_running(3)
+        self.release.set()
+        for sock in socks:
+            status, body = read_response(sock)
+            self.assertEqual(status, 200)
+            self.assertEqual(json.loads(body.decode('utf-8'))['result'], [])
+        self.assertEqual(self.max_running, 3)
+
+    def test_queued_requests(self):
+        port = self.start(2, 5)
+        socks = [send_request(port) for _ in range(5)]
+        self.wait_for_running(2)
+        # the other requests wait in the queue rather than being rejected
+        time.sleep(0.2)
+        self.assertEqual(self.max_running, 2)
+        self.release.set()
+        for sock in socks:
+            self.assertEqual(read_response(sock)[0], 200)
+        self.assertEqual(self.max_running, 2)
+
+    def test_busy(self):
+        port = self.start(1, 1)
+        running = send_request(port)
+        self.wait_for_running(1)
+        queued = send_request(port)
+        status, body = read_response(send_request(port))
+        self.assertEqual(status, 503)
+        self.assertEqual(json.loads(body.decode('utf-8')),
+                         {'version': '1.1',
+                          'id': None,
+                          'error': {'name': 'JSONRPCError',
+                                    'code': -32003,
+                                    'message': 'The server is busy, ' +
+                                               'please try again later',
+                                    'error': None}})
+        self.release.set()
+        self.assertEqual(read_response(running)[0], 200)
+        self.assertEqual(read_response(queued)[0], 200)
+
+
+def main(argv):
+    global server
+    if len(argv) < 1:
+        print('Usage: test_server.py <server_module> [unittest options]')
+        sys.exit(2)
+    sys.path.append('./')
+    server = __import__(argv[0])
+    unittest.main(argv=[sys.argv[0]] + argv[1:])
+
+
+if __name__ == "__main__":
+    main(sys.argv[1:])